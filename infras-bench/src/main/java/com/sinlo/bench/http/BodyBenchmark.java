@@ -0,0 +1,63 @@
+package com.sinlo.bench.http;
+
+import com.sinlo.core.http.Fetcha;
+import com.sinlo.core.http.Response;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading the large body of the {@link StubServer} whole or streaming it
+ *
+ * @author sinlo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class BodyBenchmark {
+
+    private StubServer server;
+    private Fetcha.Course<Response> course;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        server = new StubServer();
+        course = Fetcha.Course.identity(server.root()).cookieNone();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.close();
+    }
+
+    /**
+     * Read the large body into one array
+     */
+    @Benchmark
+    public byte[] drain() {
+        return course.get("large").fetch().join().bytes().orElse(null);
+    }
+
+    /**
+     * Read the large body through a fixed buffer
+     */
+    @Benchmark
+    public long stream() {
+        return course.get("large").fetch().join().map(in -> {
+            byte[] buf = new byte[8192];
+            long total = 0;
+            int n;
+            try (InputStream is = in) {
+                while ((n = is.read(buf)) != -1) total += n;
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            return total;
+        }).orElse(0L);
+    }
+}
@@ -0,0 +1,63 @@
+package com.sinlo.bench.http;
+
+import com.sinlo.core.http.Fetcha;
+import com.sinlo.core.http.Response;
+import com.sinlo.core.http.spec.Next;
+import com.sinlo.core.http.spec.Retry;
+import com.sinlo.core.http.spec.Status;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of the interceptor and preceptor chains of the given {@link #depth}, and of
+ * retrying a request that fails every other time
+ *
+ * @author sinlo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class ChainBenchmark {
+
+    @Param({"0", "4", "16"})
+    public int depth;
+
+    private StubServer server;
+    private Fetcha.Course<Response> chained;
+    private Fetcha.Course<Response> retrying;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        server = new StubServer();
+        chained = Fetcha.Course.identity(server.root()).cookieNone();
+        for (int i = 0; i < depth; i++) {
+            chained.intercept(conn -> Next.CONTINUE, i)
+                    .precept(Fetcha.Stage.OPEN, (conn, f) -> conn, i)
+                    .precept(Fetcha.Stage.ABOUT_TO_CONNECT, (conn, f) -> conn, i);
+        }
+        retrying = Fetcha.Course.identity(server.root()).cookieNone()
+                .retry(Retry.of(1).on(Status.SERVICE_UNAVAILABLE).backoff(0, 0));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.close();
+    }
+
+    @Benchmark
+    public Response chain() {
+        return chained.get("small").fetch().join().discard();
+    }
+
+    /**
+     * Half of the fetches are retried once
+     */
+    @Benchmark
+    public Response retry() {
+        return retrying.get("flaky").fetch().join().discard();
+    }
+}
@@ -0,0 +1,48 @@
+package com.sinlo.bench.http;
+
+import com.sinlo.core.http.Fetcha;
+import com.sinlo.core.http.spec.Status;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The costs around a fetch which involve no I/O: building the query string and
+ * resolving the status
+ *
+ * @author sinlo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CostBenchmark {
+
+    @Param({"4", "32"})
+    public int params;
+
+    private final Map<String, Object> query = new LinkedHashMap<>();
+    private final int[] codes = {200, 204, 301, 304, 404, 500, 503, 299};
+    private int code;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        for (int i = 0; i < params; i++) {
+            query.put("key" + i, "value" + i);
+        }
+    }
+
+    @Benchmark
+    public String queryString() {
+        return Fetcha.queryString(query);
+    }
+
+    @Benchmark
+    public Status resolve() {
+        return Status.resolve(codes[code++ & 7]);
+    }
+}
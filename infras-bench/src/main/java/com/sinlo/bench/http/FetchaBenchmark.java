@@ -0,0 +1,77 @@
+package com.sinlo.bench.http;
+
+import com.sinlo.core.http.Fetcha;
+import com.sinlo.core.http.Response;
+import com.sinlo.core.http.engine.Engine;
+import com.sinlo.core.http.engine.NioEngine;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The throughput and the latency distribution of fetching from the {@link StubServer} by
+ * each engine, body size and number of concurrent fetches. An operation is a fan-out of
+ * {@link #concurrency} fetches waited all together
+ * <br/>
+ * The {@code nio-direct} engine completes the futures on the selector threads instead of
+ * offloading them to the common pool
+ *
+ * @author sinlo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class FetchaBenchmark {
+
+    @Param({"blocking", "nio", "nio-direct"})
+    public String engine;
+
+    @Param({"small", "large"})
+    public String body;
+
+    @Param({"1", "16", "64"})
+    public int concurrency;
+
+    private StubServer server;
+    private NioEngine nio;
+    private Fetcha.Course<Response> course;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        server = new StubServer();
+        course = Fetcha.Course.identity(server.root()).cookieNone().engine(engine());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (nio != null) nio.close();
+        server.close();
+    }
+
+    @Benchmark
+    public void fetch(Blackhole bh) {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[concurrency];
+        for (int i = 0; i < concurrency; i++) {
+            futures[i] = course.get(body).fetch()
+                    .thenAccept(r -> bh.consume(r.bytes().orElse(null)));
+        }
+        CompletableFuture.allOf(futures).join();
+    }
+
+    private Engine engine() {
+        switch (engine) {
+            case "nio":
+                return nio = new NioEngine(2, ForkJoinPool.commonPool(), Engine.blocking());
+            case "nio-direct":
+                return nio = new NioEngine(2, Runnable::run, Engine.blocking());
+            default:
+                return Engine.blocking();
+        }
+    }
+}
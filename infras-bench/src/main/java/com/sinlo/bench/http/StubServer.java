@@ -0,0 +1,104 @@
+package com.sinlo.bench.http;
+
+import com.sinlo.core.common.util.Filia;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The in-process http stub server on loopback, answering with canned bodies so that the
+ * benchmarks measure the client rather than the server
+ * <ul>
+ *     <li>{@code /small} answers {@link #SMALL} bytes</li>
+ *     <li>{@code /large} answers {@link #LARGE} bytes</li>
+ *     <li>{@code /flaky} answers 503 to every other request and {@code /small} otherwise</li>
+ *     <li>{@code /echo} answers the request body or the query string</li>
+ * </ul>
+ *
+ * @author sinlo
+ */
+public class StubServer implements AutoCloseable {
+
+    public static final int SMALL = 128;
+    public static final int LARGE = 1024 * 1024;
+
+    private static final byte[] SMALL_BODY = body(SMALL);
+    private static final byte[] LARGE_BODY = body(LARGE);
+
+    static {
+        // or else the head and the body written apart wait for the delayed ack of each other
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final AtomicLong flaky = new AtomicLong();
+
+    public StubServer() {
+        try {
+            this.server = HttpServer.create(
+                    new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 4096);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "stub-server");
+            t.setDaemon(true);
+            return t;
+        });
+        server.setExecutor(executor);
+        server.createContext("/small", x -> answer(x, 200, SMALL_BODY));
+        server.createContext("/large", x -> answer(x, 200, LARGE_BODY));
+        server.createContext("/flaky", x -> {
+            if ((flaky.getAndIncrement() & 1) == 0) answer(x, 503, new byte[0]);
+            else answer(x, 200, SMALL_BODY);
+        });
+        server.createContext("/echo", x -> {
+            byte[] body = Filia.drain(x.getRequestBody(), true);
+            if (body.length == 0) {
+                String query = x.getRequestURI().getRawQuery();
+                body = query == null ? body : query.getBytes();
+            }
+            answer(x, 200, body);
+        });
+        server.start();
+    }
+
+    /**
+     * The root url ending with a slash
+     */
+    public String root() {
+        InetSocketAddress address = server.getAddress();
+        return String.format("http://%s:%s/",
+                address.getAddress().getHostAddress(), address.getPort());
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private static void answer(HttpExchange x, int code, byte[] body) throws IOException {
+        x.getResponseHeaders().set("Content-Type", "application/octet-stream");
+        x.sendResponseHeaders(code, body.length == 0 ? -1 : body.length);
+        try (OutputStream os = x.getResponseBody()) {
+            os.write(body);
+        }
+    }
+
+    private static byte[] body(int size) {
+        byte[] body = new byte[size];
+        for (int i = 0; i < size; i++) {
+            body[i] = (byte) ('a' + i % 26);
+        }
+        return body;
+    }
+}
@@ -1,14 +1,19 @@
 package com.sinlo.core.common.util;
 
+import com.sinlo.core.common.wraparound.Lazy;
 import com.sinlo.core.common.wraparound.Two;
 import com.sinlo.sponte.util.Pool;
 
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
-import java.time.LocalDate;
-import java.time.LocalDateTime;
-import java.time.LocalTime;
+import java.time.*;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoField;
+import java.time.temporal.TemporalAccessor;
+import java.time.temporal.TemporalQueries;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
 import java.util.*;
 import java.util.function.Predicate;
 
@@ -22,10 +27,30 @@ public class Daty {
 
     /**
      * @see <a href="http://en.wikipedia.org/wiki/ISO_8601#Combined_date_and_time_representations">Combined Date and Time Representations</a>
+     * @deprecated a {@link SimpleDateFormat} is not thread safe, use {@link #ISO_8601} instead
      */
+    @Deprecated
     public static final DateFormat ISO8601 = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSXXX");
 
+    /**
+     * @see <a href="http://en.wikipedia.org/wiki/ISO_8601#Combined_date_and_time_representations">Combined Date and Time Representations</a>
+     * @see #format(Date, DateTimeFormatter)
+     */
+    public static final DateTimeFormatter ISO_8601 = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSXXX");
+
     private static final Pool.Simple<DateFormat> formats = new Pool.Simple<>();
+    private static final Pool.Simple<DateTimeFormatter> dtfs = new Pool.Simple<>();
+
+    private static final int SECOND = 1000;
+    private static final int MINUTE = 60 * SECOND;
+    private static final int HOUR = 60 * MINUTE;
+    private static final int DAY = 24 * HOUR;
+
+    // 1582-10-15T00:00:00Z, the default gregorian change of the GregorianCalendar
+    private static final long GREGORIAN = -12219292800000L;
+
+    private static final Pool<Locale, Week> weeks = new Pool<>();
+
     /**
      * The default {@link Daty} instance of default timezone
      *
@@ -37,41 +62,75 @@ public class Daty {
      * The default {@link PolyParser} instance of default timezone, which can parse a
      * variety of common seen date strings
      */
-    public static final PolyParser PARSER = PolyParser.builder()
-            .full(s -> s.charAt(10) == 'T', ISO8601)
-            .when(s -> s.charAt(4) == '-' && (s.length() == 10 || s.charAt(10) == ' '))
-            .full(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSSSSS"))
-            .wide(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss"))
-            .brief(new SimpleDateFormat("yyyy-MM-dd"))
-            .and()
-            .when(s -> s.charAt(4) == '/')
-            .full(new SimpleDateFormat("yyyy/MM/dd HH:mm:ss.SSSSSS"))
-            .wide(new SimpleDateFormat("yyyy/MM/dd HH:mm:ss"))
-            .brief(new SimpleDateFormat("yyyy/MM/dd"))
-            .and()
-            .when(s -> s.charAt(2) == '/')
-            .full(new SimpleDateFormat("dd/MM/yyyy HH:mm:ss.SSSSSS"))
-            .wide(new SimpleDateFormat("dd/MM/yyyy HH:mm:ss"))
-            .brief(new SimpleDateFormat("dd/MM/yyyy"))
-            .and()
-            .fallback(null)
-            .timeZone(TimeZone.getDefault())
-            .build();
+    public static final PolyParser PARSER = DEFAULT.parser;
 
     /**
      * The {@link TimeZone} used across this {@link Daty}
      */
     public final TimeZone timeZone;
 
-    private Daty(TimeZone timeZone) {
+    /**
+     * The {@link ZoneId} of the {@link #timeZone}
+     */
+    public final ZoneId zone;
+
+    /**
+     * The {@link PolyParser} of the {@link #zone}
+     */
+    public final PolyParser parser;
+
+    /**
+     * The {@link Locale} of the week fields, or null for the default locale at the moment
+     */
+    public final Locale locale;
+
+    private final Lazy<Offsets> offsets;
+
+    private Daty(TimeZone timeZone, Locale locale) {
         this.timeZone = timeZone;
+        this.zone = timeZone.toZoneId();
+        this.locale = locale;
+        this.parser = PolyParser.builder().zone(zone).build();
+        this.offsets = new Lazy<>(() -> Offsets.of(zone));
     }
 
     /**
-     * Create a new Daty of the given {@code timeZone}
+     * Create a new Daty of the given {@code timeZone} and the default locale
      */
     public static Daty of(TimeZone timeZone) {
-        return new Daty(timeZone);
+        return new Daty(timeZone, null);
+    }
+
+    /**
+     * Create a new Daty of the given {@code timeZone} and {@code locale}
+     */
+    public static Daty of(TimeZone timeZone, Locale locale) {
+        return new Daty(timeZone, locale);
+    }
+
+    /**
+     * The first day of week of the {@link #locale}
+     *
+     * @see Calendar#getFirstDayOfWeek()
+     */
+    public int firstDayOfWeek() {
+        return week().first;
+    }
+
+    private Week week() {
+        final Locale l = locale == null ? Locale.getDefault(Locale.Category.FORMAT) : locale;
+        return weeks.get(l, () -> new Week(Calendar.getInstance(l)));
+    }
+
+    /**
+     * If the fields of the given epoch millis are the same on the proleptic gregorian time
+     * line as in the {@link Calendar} of the {@link #locale}, which is not the case before the
+     * gregorian change where a {@link GregorianCalendar} turns julian, nor in the locales of
+     * the other calendar systems
+     */
+    private boolean gregorian(long millis) {
+        // any offset is less than a day
+        return millis >= GREGORIAN + DAY && week().gregorian;
     }
 
     /**
@@ -99,17 +158,54 @@ public class Daty {
      *                  <li>{@link Calendar#SECOND}</li>
      *                  <li>{@link Calendar#MILLISECOND}</li>
      *               </ul>
+     * @see #same(long, long, int)
      */
     public boolean same(Date d1, Date d2, int field) {
-        Calendar c1 = calendar(d1);
-        Calendar c2 = calendar(d2);
+        return same(d1.getTime(), d2.getTime(), field);
+    }
 
-        for (int i = Calendar.ERA; i <= field; i++) {
-            if (c1.get(i) != c2.get(i)) {
-                return false;
-            }
+    /**
+     * Same as {@link #same(Date, Date, int)} but on epoch millis. Every field up to the given
+     * {@code field} is compared on the local time line, which needs no {@link Calendar} except
+     * for the locale dependent week fields and the dates that are not {@link #gregorian(long)}
+     */
+    public boolean same(long m1, long m2, int field) {
+        final long l1 = local(m1), l2 = local(m2);
+        switch (gregorian(Math.min(m1, m2)) ? field : -1) {
+            case Calendar.ERA:
+                return (year(civil(Math.floorDiv(l1, DAY))) > 0)
+                        == (year(civil(Math.floorDiv(l2, DAY))) > 0);
+            case Calendar.YEAR:
+                return year(civil(Math.floorDiv(l1, DAY))) == year(civil(Math.floorDiv(l2, DAY)));
+            case Calendar.MONTH:
+                // year and month
+                return civil(Math.floorDiv(l1, DAY)) >> 5 == civil(Math.floorDiv(l2, DAY)) >> 5;
+            case Calendar.DATE:
+            case Calendar.DAY_OF_YEAR:
+            case Calendar.DAY_OF_WEEK:
+            case Calendar.DAY_OF_WEEK_IN_MONTH:
+                return Math.floorDiv(l1, DAY) == Math.floorDiv(l2, DAY);
+            case Calendar.AM_PM:
+                return Math.floorDiv(l1, DAY / 2) == Math.floorDiv(l2, DAY / 2);
+            case Calendar.HOUR:
+            case Calendar.HOUR_OF_DAY:
+                return Math.floorDiv(l1, HOUR) == Math.floorDiv(l2, HOUR);
+            case Calendar.MINUTE:
+                return Math.floorDiv(l1, MINUTE) == Math.floorDiv(l2, MINUTE);
+            case Calendar.SECOND:
+                return Math.floorDiv(l1, SECOND) == Math.floorDiv(l2, SECOND);
+            case Calendar.MILLISECOND:
+                return l1 == l2;
+            default:
+                Calendar c1 = calendar(new Date(m1));
+                Calendar c2 = calendar(new Date(m2));
+                for (int i = Calendar.ERA; i <= field; i++) {
+                    if (c1.get(i) != c2.get(i)) {
+                        return false;
+                    }
+                }
+                return true;
         }
-        return true;
     }
 
     /**
@@ -118,7 +214,17 @@ public class Daty {
      * @see Daty#get(Date, int)
      */
     public int weekday(Date date) {
-        return get(date, Calendar.DAY_OF_WEEK);
+        return weekday(date.getTime());
+    }
+
+    /**
+     * get day of week of the given epoch millis
+     *
+     * @see Calendar#DAY_OF_WEEK
+     */
+    public int weekday(long millis) {
+        // the days of week go on regardless of the calendar system
+        return dow(Math.floorDiv(local(millis), DAY));
     }
 
     /**
@@ -127,15 +233,69 @@ public class Daty {
      * @see Daty#get(Date, int)
      */
     public int day365(Date date) {
-        return get(date, Calendar.DAY_OF_YEAR);
+        return day365(date.getTime());
+    }
+
+    /**
+     * get day of year of the given epoch millis
+     *
+     * @see Calendar#DAY_OF_YEAR
+     */
+    public int day365(long millis) {
+        if (!gregorian(millis)) return get(millis, Calendar.DAY_OF_YEAR);
+        long epochDay = Math.floorDiv(local(millis), DAY);
+        return (int) (epochDay - epochDay(year(civil(epochDay)), 1, 1)) + 1;
     }
 
     /**
      * @see Calendar#get(int)
+     * @see #get(long, int)
      */
     public int get(Date date, int field) {
-        Calendar c = calendar(date);
-        return c.get(field);
+        return get(date.getTime(), field);
+    }
+
+    /**
+     * Same as {@link Calendar#get(int)} on the given epoch millis, the locale dependent week
+     * fields, the offset fields and the dates that are not {@link #gregorian(long)} are still
+     * delegated to a {@link Calendar}
+     */
+    public int get(long millis, int field) {
+        final long local = local(millis);
+        final long epochDay = Math.floorDiv(local, DAY);
+        final int ofDay = (int) Math.floorMod(local, DAY);
+        switch (gregorian(millis) ? field : -1) {
+            case Calendar.ERA:
+                return year(civil(epochDay)) > 0
+                        ? GregorianCalendar.AD : GregorianCalendar.BC;
+            case Calendar.YEAR:
+                int y = year(civil(epochDay));
+                return y > 0 ? y : 1 - y;
+            case Calendar.MONTH:
+                return month(civil(epochDay)) - 1;
+            case Calendar.DATE:
+                return dom(civil(epochDay));
+            case Calendar.DAY_OF_YEAR:
+                return (int) (epochDay - epochDay(year(civil(epochDay)), 1, 1)) + 1;
+            case Calendar.DAY_OF_WEEK:
+                return dow(epochDay);
+            case Calendar.DAY_OF_WEEK_IN_MONTH:
+                return (dom(civil(epochDay)) - 1) / 7 + 1;
+            case Calendar.AM_PM:
+                return ofDay < DAY / 2 ? Calendar.AM : Calendar.PM;
+            case Calendar.HOUR:
+                return ofDay / HOUR % 12;
+            case Calendar.HOUR_OF_DAY:
+                return ofDay / HOUR;
+            case Calendar.MINUTE:
+                return ofDay / MINUTE % 60;
+            case Calendar.SECOND:
+                return ofDay / SECOND % 60;
+            case Calendar.MILLISECOND:
+                return ofDay % SECOND;
+            default:
+                return calendar(new Date(millis)).get(field);
+        }
     }
 
     /**
@@ -144,10 +304,23 @@ public class Daty {
      * @param offset offset the given date
      */
     public Date dayOneOfWeek(Date date, int offset) {
-        Calendar cal = calendar(date);
-        cal.add(Calendar.WEEK_OF_YEAR, offset);
-        cal.set(Calendar.DAY_OF_WEEK, cal.getActualMinimum(Calendar.DAY_OF_WEEK));
-        return cal.getTime();
+        return new Date(dayOneOfWeek(date.getTime(), offset));
+    }
+
+    /**
+     * get the first day of week of the given epoch millis, which is the {@link Calendar#SUNDAY}
+     * of the week regarding the {@link #firstDayOfWeek()}, keeping the time of day
+     *
+     * @param offset offset the given date by weeks
+     * @see #utc(long)
+     */
+    public long dayOneOfWeek(long millis, int offset) {
+        final int first = firstDayOfWeek();
+        final long local = local(millis) + offset * 7L * DAY;
+        final long epochDay = Math.floorDiv(local, DAY);
+        final long weekStart = epochDay - Math.floorMod(dow(epochDay) - first, 7);
+        return utc(local + (weekStart + Math.floorMod(Calendar.SUNDAY - first, 7)
+                - epochDay) * DAY);
     }
 
     /**
@@ -156,10 +329,25 @@ public class Daty {
      * @param offset offset the given date
      */
     public Date dayOneOfMonth(Date date, int offset) {
-        Calendar cal = calendar(date);
-        cal.add(Calendar.MONTH, offset);
-        cal.set(Calendar.DAY_OF_MONTH, cal.getActualMinimum(Calendar.DAY_OF_MONTH));
-        return cal.getTime();
+        return new Date(dayOneOfMonth(date.getTime(), offset));
+    }
+
+    /**
+     * get the first day of month of the given epoch millis, keeping the time of day
+     *
+     * @param offset offset the given date by months
+     * @see #utc(long)
+     */
+    public long dayOneOfMonth(long millis, int offset) {
+        if (gregorian(millis)) {
+            final long local = local(millis);
+            final long civil = civil(Math.floorDiv(local, DAY));
+            final long months = year(civil) * 12L + month(civil) - 1 + offset;
+            final long day = utc(epochDay(Math.floorDiv(months, 12),
+                    (int) Math.floorMod(months, 12) + 1, 1) * DAY + Math.floorMod(local, DAY));
+            if (gregorian(day)) return day;
+        }
+        return dayOne(millis, Calendar.MONTH, offset, Calendar.DAY_OF_MONTH);
     }
 
     /**
@@ -168,10 +356,75 @@ public class Daty {
      * @param offset offset the given date
      */
     public Date dayOneOfYear(Date date, int offset) {
-        Calendar cal = calendar(date);
-        cal.add(Calendar.YEAR, offset);
-        cal.set(Calendar.DAY_OF_YEAR, cal.getActualMinimum(Calendar.DAY_OF_YEAR));
-        return cal.getTime();
+        return new Date(dayOneOfYear(date.getTime(), offset));
+    }
+
+    /**
+     * get the first day of year of the given epoch millis, keeping the time of day
+     *
+     * @param offset offset the given date by years
+     * @see #utc(long)
+     */
+    public long dayOneOfYear(long millis, int offset) {
+        if (gregorian(millis)) {
+            final long local = local(millis);
+            final long day = utc(epochDay(year(civil(Math.floorDiv(local, DAY))) + offset, 1, 1)
+                    * DAY + Math.floorMod(local, DAY));
+            if (gregorian(day)) return day;
+        }
+        return dayOne(millis, Calendar.YEAR, offset, Calendar.DAY_OF_YEAR);
+    }
+
+    /**
+     * Offset the given epoch millis by the given {@code unit} and set the given {@code field}
+     * to its minimum by a {@link Calendar}
+     */
+    private long dayOne(long millis, int unit, int offset, int field) {
+        Calendar cal = calendar(new Date(millis));
+        cal.add(unit, offset);
+        cal.set(field, cal.getActualMinimum(field));
+        return cal.getTimeInMillis();
+    }
+
+    /**
+     * Get the local epoch day of the given epoch millis
+     */
+    public long epochDay(long millis) {
+        return Math.floorDiv(local(millis), DAY);
+    }
+
+    /**
+     * Get the epoch millis of the start of the local day of the given epoch millis
+     */
+    public long startOfDay(long millis) {
+        return utc(epochDay(millis) * DAY);
+    }
+
+    /**
+     * Convert the given epoch millis to the local millis, that is the epoch millis as if
+     * the {@link #zone} were UTC
+     */
+    public long local(long millis) {
+        return millis + offsets.get().offset(millis);
+    }
+
+    /**
+     * Convert the given local millis back to the epoch millis, the same as
+     * {@link ZonedDateTime#ofLocal(LocalDateTime, ZoneId, ZoneOffset)} without a preferred
+     * offset. That is a local time in an overlap is resolved using the offset before the
+     * transition, and a local time in a gap is moved later by the length of the gap
+     */
+    public long utc(long local) {
+        final Offsets o = offsets.get();
+        // any offset is less than a day, so a transition if any must be in between
+        final int early = o.offset(local - DAY), late = o.offset(local + DAY);
+        if (early == late) return local - early;
+        final LocalDateTime ldt = LocalDateTime.ofEpochSecond(Math.floorDiv(local, SECOND),
+                (int) Math.floorMod(local, SECOND) * 1_000_000, ZoneOffset.UTC);
+        final List<ZoneOffset> valid = o.rules.getValidOffsets(ldt);
+        final ZoneOffset offset = valid.isEmpty()
+                ? o.rules.getTransition(ldt).getOffsetBefore() : valid.get(0);
+        return local - offset.getTotalSeconds() * (long) SECOND;
     }
 
     /**
@@ -189,7 +442,8 @@ public class Daty {
      * @see #during(LocalDateTime)
      */
     public <T> Two<LocalDateTime, LocalDateTime> during(Date date) {
-        return during(toLocal(date));
+        LocalDate local = LocalDate.ofEpochDay(epochDay(date.getTime()));
+        return Two.two(local.atStartOfDay(), local.atTime(LocalTime.MAX));
     }
 
     /**
@@ -220,7 +474,7 @@ public class Daty {
      * @see Daty#calendar(Date, TimeZone)
      */
     public Calendar calendar(Date date) {
-        return calendar(date, timeZone);
+        return locale == null ? calendar(date, timeZone) : calendar(date, timeZone, locale);
     }
 
     /**
@@ -232,40 +486,231 @@ public class Daty {
         return calendar;
     }
 
+    /**
+     * get a calendar instance of the given date, timezone and locale
+     */
+    public static Calendar calendar(Date date, TimeZone timeZone, Locale locale) {
+        Calendar calendar = Calendar.getInstance(timeZone, locale);
+        calendar.setTime(date);
+        return calendar;
+    }
+
     /**
      * Get a corresponding {@link DateFormat}
+     *
+     * @deprecated the {@link DateFormat} is shared while not being thread safe, use
+     * {@link #dtf(String)} instead
      */
+    @Deprecated
     public static DateFormat formatter(String pattern) {
         return formats.get(pattern, () -> new SimpleDateFormat(pattern));
     }
 
+    /**
+     * Get a corresponding {@link DateTimeFormatter}, which is immutable and thread safe
+     */
+    public static DateTimeFormatter dtf(String pattern) {
+        return dtfs.get(pattern, () -> DateTimeFormatter.ofPattern(pattern));
+    }
+
+    /**
+     * Format the given {@link Date} using the given pattern in the {@link #zone}
+     *
+     * @see #dtf(String)
+     */
+    public String format(Date date, String pattern) {
+        return format(date, dtf(pattern));
+    }
+
+    /**
+     * Format the given {@link Date} using the given {@link DateTimeFormatter} in the
+     * {@link #zone}
+     */
+    public String format(Date date, DateTimeFormatter formatter) {
+        return formatter.format(date.toInstant().atZone(zone));
+    }
+
+    /**
+     * Parse the given date string using the {@link #parser}
+     *
+     * @see PolyParser#parse(String)
+     */
+    public Date parse(String date) {
+        return parser.parse(date);
+    }
+
     /**
      * {@link Date} to {@link LocalDateTime}
      */
     public LocalDateTime toLocal(Date date) {
-        return date.toInstant().atZone(timeZone.toZoneId()).toLocalDateTime();
+        return date.toInstant().atZone(zone).toLocalDateTime();
     }
 
     /**
      * {@link LocalDateTime} to {@link Date}
      */
     public Date fromLocal(LocalDateTime local) {
-        return Date.from(local.atZone(timeZone.toZoneId()).toInstant());
+        return Date.from(local.atZone(zone).toInstant());
+    }
+
+    /**
+     * Day of week of the given epoch day, the 1970-01-01 is a {@link Calendar#THURSDAY}
+     */
+    private static int dow(long epochDay) {
+        return (int) Math.floorMod(epochDay + 4, 7) + 1;
+    }
+
+    /**
+     * Compute the proleptic gregorian year, month and day of month of the given epoch day and
+     * pack them into a long as {@code year << 9 | month << 5 | day}
+     *
+     * @see <a href="http://howardhinnant.github.io/date_algorithms.html#civil_from_days">civil_from_days</a>
+     */
+    private static long civil(long epochDay) {
+        final long z = epochDay + 719468;
+        final long era = Math.floorDiv(z, 146097);
+        final long doe = z - era * 146097;
+        final long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        final long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        final long mp = (5 * doy + 2) / 153;
+        final long d = doy - (153 * mp + 2) / 5 + 1;
+        final long m = mp < 10 ? mp + 3 : mp - 9;
+        return (yoe + era * 400 + (m <= 2 ? 1 : 0)) << 9 | m << 5 | d;
+    }
+
+    private static int year(long civil) {
+        return (int) (civil >> 9);
+    }
+
+    private static int month(long civil) {
+        return (int) (civil >> 5 & 0xF);
+    }
+
+    private static int dom(long civil) {
+        return (int) (civil & 0x1F);
+    }
+
+    /**
+     * Compute the epoch day of the given proleptic gregorian year, month and day of month
+     *
+     * @see <a href="http://howardhinnant.github.io/date_algorithms.html#days_from_civil">days_from_civil</a>
+     */
+    private static long epochDay(long year, int month, int day) {
+        final long y = month <= 2 ? year - 1 : year;
+        final long era = Math.floorDiv(y, 400);
+        final long yoe = y - era * 400;
+        final long doy = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        final long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097 + doe - 719468;
+    }
+
+    /**
+     * The week fields of a {@link Locale} that the epoch millis computing needs
+     */
+    private static class Week {
+        private final int first;
+        private final boolean gregorian;
+
+        private Week(Calendar calendar) {
+            this.first = calendar.getFirstDayOfWeek();
+            this.gregorian = "gregory".equals(calendar.getCalendarType());
+        }
+    }
+
+    /**
+     * The zone offsets of a specific {@link ZoneId}, all the transitions between 1900 and 2100
+     * are computed once and kept in a sorted array so that resolving an offset is a binary
+     * search without any allocation
+     */
+    private static class Offsets {
+
+        private static final Pool<ZoneId, Offsets> pool = new Pool<>();
+
+        // 1900-01-01T00:00:00Z
+        private static final long FROM = -2208988800000L;
+        // 2100-01-01T00:00:00Z
+        private static final long TO = 4102444800000L;
+
+        private final ZoneRules rules;
+        // the epoch millis of every transition
+        private final long[] transitions;
+        // the offset millis before the transition of the same index, and the last one is the
+        // offset after the last transition
+        private final int[] offsets;
+
+        private Offsets(ZoneRules rules) {
+            this.rules = rules;
+            List<ZoneOffsetTransition> all = new ArrayList<>();
+            ZoneOffsetTransition t = rules.nextTransition(Instant.ofEpochMilli(FROM));
+            while (t != null && t.toEpochSecond() * SECOND < TO) {
+                all.add(t);
+                t = rules.nextTransition(t.getInstant());
+            }
+            this.transitions = new long[all.size()];
+            this.offsets = new int[all.size() + 1];
+            this.offsets[0] = rules.getOffset(Instant.ofEpochMilli(FROM)).getTotalSeconds() * SECOND;
+            for (int i = 0; i < transitions.length; i++) {
+                transitions[i] = all.get(i).toEpochSecond() * SECOND;
+                offsets[i + 1] = all.get(i).getOffsetAfter().getTotalSeconds() * SECOND;
+            }
+        }
+
+        private static Offsets of(ZoneId zone) {
+            return pool.get(zone, () -> new Offsets(zone.getRules()));
+        }
+
+        /**
+         * Get the offset millis of the given epoch millis
+         */
+        private int offset(long millis) {
+            if (millis < FROM || millis >= TO) {
+                return rules.getOffset(Instant.ofEpochMilli(millis)).getTotalSeconds() * SECOND;
+            }
+            int lo = 0, hi = transitions.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (transitions[mid] <= millis) lo = mid + 1;
+                else hi = mid;
+            }
+            return offsets[lo];
+        }
     }
 
     /**
-     * A zipped date parser that can parse a variety of supported patterns
+     * A zipped date parser that can parse a variety of supported patterns. The common shapes
+     * are recognized by dispatching on the length and the separator characters of the given
+     * date string and then parsed by hand, which are:
+     * <ul>
+     *     <li>{@code yyyy-MM-dd}, {@code yyyy/MM/dd}, {@code dd/MM/yyyy}</li>
+     *     <li>any of the above followed by a space or a {@code T} and {@code HH:mm:ss}</li>
+     *     <li>any of the above followed by a fraction of second of at most 9 digits</li>
+     *     <li>any of the above with time followed by a zone offset like {@code Z},
+     *     {@code +08}, {@code +0800} or {@code +08:00}</li>
+     * </ul>
+     * Date strings of other shapes would be passed to the {@code fallbacks} one by one. The
+     * {@link PolyParser} is immutable, hence thread safe
+     * <br/>
+     * The legacy {@link DateFormat}s given to the deprecated builder methods are kept as they
+     * are, with their own {@link TimeZone}s. The brief, wide and full ones are chosen before
+     * the built-in shapes, just like before, while the legacy fallback is only tried after
+     * all the others
      */
     public static class PolyParser {
 
+        private final ZoneId zone;
+        private final DateTimeFormatter[] fallbacks;
+
         private final Map<Predicate<String>, DateFormat> brief;
         private final Map<Predicate<String>, DateFormat> wide;
         private final Map<Predicate<String>, DateFormat> full;
         private final DateFormat fallback;
 
-        private PolyParser(Map<Predicate<String>, DateFormat> brief,
+        private PolyParser(ZoneId zone, DateTimeFormatter[] fallbacks,
+                           Map<Predicate<String>, DateFormat> brief,
                            Map<Predicate<String>, DateFormat> wide,
                            Map<Predicate<String>, DateFormat> full, DateFormat fallback) {
+            this.zone = zone;
+            this.fallbacks = fallbacks;
             this.brief = brief;
             this.wide = wide;
             this.full = full;
@@ -280,20 +725,25 @@ public class Daty {
         }
 
         /**
-         * Create a builder with all formats copied to it
+         * Create a builder with the zone and all fallbacks copied to it
          */
         public Builder copy() {
-            Builder builder = new Builder().fallback(fallback);
+            Builder builder = new Builder().zone(zone);
+            Collections.addAll(builder.fallbacks, fallbacks);
             builder.brief.putAll(this.brief);
             builder.wide.putAll(this.wide);
             builder.full.putAll(this.full);
+            builder.fallback = this.fallback;
             return builder;
         }
 
         /**
-         * Get a format collection based on the given length of the date string or the date
-         * pattern
+         * Get a legacy format collection based on the given length of the date string or the
+         * date pattern
+         *
+         * @deprecated only the legacy {@link DateFormat}s are collected
          */
+        @Deprecated
         public Map<Predicate<String>, DateFormat> collection(int len) {
             switch (len) {
                 case 10:
@@ -306,51 +756,262 @@ public class Daty {
         }
 
         /**
-         * Choose a proper {@link DateFormat} supporting the given {@code pattern}
+         * Choose a proper legacy {@link DateFormat} supporting the given {@code pattern}
          *
-         * @return the proper {@link DateFormat} or the {@code fallback}
+         * @return the proper {@link DateFormat} or the legacy {@code fallback}
+         * @deprecated only the legacy {@link DateFormat}s are chosen
          */
+        @Deprecated
         public Optional<DateFormat> choose(String pattern) {
-            return Optional.ofNullable(collection(pattern.length())
-                    .entrySet().stream()
-                    .filter(e -> e.getKey().test(pattern))
-                    .map(Map.Entry::getValue)
-                    .findFirst().orElse(fallback));
+            return Optional.ofNullable(Funny.nvl(selected(pattern), fallback));
         }
 
         /**
-         * Do the parse using a proper parser selected from all supported parsers
+         * The legacy {@link DateFormat} of the first selector matching the given date string
+         */
+        private DateFormat selected(String date) {
+            for (Map.Entry<Predicate<String>, DateFormat> e :
+                    collection(date.length()).entrySet()) {
+                if (e.getKey().test(date)) return e.getValue();
+            }
+            return null;
+        }
+
+        /**
+         * Do the parse using the built-in shapes first and then the fallbacks
          *
          * @throws NoValidParserException if none supporting parser could be found
          */
         public Date parse(String date) {
+            return Date.from(instant(date));
+        }
+
+        /**
+         * Same as {@link #parse(String)}, but produces an {@link Instant}
+         *
+         * @throws NoValidParserException if none supporting parser could be found
+         */
+        public Instant instant(String date) {
             if (Strine.isEmpty(date))
                 throw new IllegalArgumentException("The input date string is empty");
+            DateFormat legacy = selected(date);
+            if (legacy != null) return legacy(legacy, date);
+            Instant instant = shaped(date);
+            if (instant != null) return instant;
+            for (DateTimeFormatter f : fallbacks) {
+                try {
+                    return resolve(f.parse(date), zone);
+                } catch (DateTimeException ignored) {
+                }
+            }
+            if (fallback != null) return legacy(fallback, date);
+            throw new NoValidParserException(date);
+        }
+
+        /**
+         * Parse by the given legacy {@link DateFormat}, which is not thread safe
+         */
+        private static Instant legacy(DateFormat df, String date) {
             try {
-                return choose(date)
-                        .orElseThrow(() -> new NoValidParserException(date))
-                        .parse(date);
+                synchronized (df) {
+                    return df.parse(date).toInstant();
+                }
             } catch (ParseException e) {
                 return Try.toss(e);
             }
         }
 
+        /**
+         * Parse the given date string if it is of any of the built-in shapes
+         *
+         * @return the parsed {@link Instant} or null if the shape is not recognized or any of
+         * its fields is out of range, e.g. a month of 13, so that the fallbacks could be tried
+         */
+        private Instant shaped(String s) {
+            try {
+                return shape(s);
+            } catch (DateTimeException e) {
+                return null;
+            }
+        }
+
+        private Instant shape(String s) {
+            final int len = s.length();
+            if (len < 10) return null;
+            final int y, m, d;
+            final char sep = s.charAt(4);
+            if ((sep == '-' || sep == '/') && s.charAt(7) == sep) {
+                // yyyy-MM-dd or yyyy/MM/dd
+                y = digits(s, 0, 4);
+                m = digits(s, 5, 2);
+                d = digits(s, 8, 2);
+            } else if (s.charAt(2) == '/' && s.charAt(5) == '/') {
+                // dd/MM/yyyy
+                d = digits(s, 0, 2);
+                m = digits(s, 3, 2);
+                y = digits(s, 6, 4);
+            } else {
+                return null;
+            }
+            if ((y | m | d) < 0) return null;
+            if (len == 10) {
+                return LocalDate.of(y, m, d).atStartOfDay(zone).toInstant();
+            }
+
+            final char t = s.charAt(10);
+            if (len < 19 || (t != ' ' && t != 'T')
+                    || s.charAt(13) != ':' || s.charAt(16) != ':') return null;
+            final int hh = digits(s, 11, 2), mm = digits(s, 14, 2), ss = digits(s, 17, 2);
+            if ((hh | mm | ss) < 0) return null;
+
+            int i = 19;
+            int nanos = 0;
+            if (i < len && s.charAt(i) == '.') {
+                int scale = 100_000_000;
+                while (++i < len) {
+                    int digit = s.charAt(i) - '0';
+                    if (digit < 0 || digit > 9) break;
+                    // any digit beyond nanoseconds is truncated
+                    nanos += digit * scale;
+                    scale /= 10;
+                }
+            }
+            final LocalDateTime local = LocalDateTime.of(y, m, d, hh, mm, ss, nanos);
+            if (i == len) {
+                return local.atZone(zone).toInstant();
+            }
+
+            final int offset = offset(s, i, len);
+            if (offset == Integer.MIN_VALUE) return null;
+            return local.toInstant(ZoneOffset.ofTotalSeconds(offset));
+        }
+
+        /**
+         * Parse the zone offset starting from the given index {@code i} to the end
+         *
+         * @return the total offset in seconds, or {@link Integer#MIN_VALUE} if the offset is
+         * not recognized
+         */
+        private static int offset(String s, int i, int len) {
+            final char sign = s.charAt(i);
+            if (sign == 'Z' || sign == 'z') {
+                return i + 1 == len ? 0 : Integer.MIN_VALUE;
+            }
+            if ((sign != '+' && sign != '-') || len - i < 3) return Integer.MIN_VALUE;
+            int hh = digits(s, i + 1, 2), mm = 0;
+            switch (len - i) {
+                case 3:
+                    break;
+                case 5:
+                    mm = digits(s, i + 3, 2);
+                    break;
+                case 6:
+                    mm = s.charAt(i + 3) == ':' ? digits(s, i + 4, 2) : -1;
+                    break;
+                default:
+                    return Integer.MIN_VALUE;
+            }
+            if ((hh | mm) < 0) return Integer.MIN_VALUE;
+            int total = hh * 3600 + mm * 60;
+            return sign == '-' ? -total : total;
+        }
+
+        /**
+         * Read {@code n} decimal digits starting from {@code from} as an int
+         *
+         * @return the int value, or -1 if any char is not a decimal digit
+         */
+        private static int digits(String s, int from, int n) {
+            int v = 0;
+            for (int i = from, end = from + n; i < end; i++) {
+                int digit = s.charAt(i) - '0';
+                if (digit < 0 || digit > 9) return -1;
+                v = v * 10 + digit;
+            }
+            return v;
+        }
+
+        /**
+         * Resolve the parsed {@link TemporalAccessor} to an {@link Instant}, any missing zone
+         * would be the given {@code zone}, and any missing time would be the start of day
+         */
+        private static Instant resolve(TemporalAccessor parsed, ZoneId zone) {
+            if (parsed.isSupported(ChronoField.INSTANT_SECONDS)) {
+                return Instant.from(parsed);
+            }
+            LocalDate date = parsed.query(TemporalQueries.localDate());
+            if (date == null)
+                throw new DateTimeException("No date could be resolved");
+            LocalTime time = parsed.query(TemporalQueries.localTime());
+            ZoneId z = Funny.nvl(parsed.query(TemporalQueries.zone()), zone);
+            return (time == null ? date.atStartOfDay(z) : date.atTime(time).atZone(z))
+                    .toInstant();
+        }
+
         /**
          * The builder responsible for building a proper {@link PolyParser}
          */
         public static class Builder {
 
-            private final Map<Predicate<String>, DateFormat> brief = new HashMap<>();
-            private final Map<Predicate<String>, DateFormat> wide = new HashMap<>();
-            private final Map<Predicate<String>, DateFormat> full = new HashMap<>();
+            private final List<DateTimeFormatter> fallbacks = new ArrayList<>();
+
+            private final Map<Predicate<String>, DateFormat> brief = new LinkedHashMap<>();
+            private final Map<Predicate<String>, DateFormat> wide = new LinkedHashMap<>();
+            private final Map<Predicate<String>, DateFormat> full = new LinkedHashMap<>();
 
             private DateFormat fallback;
 
-            private TimeZone timeZone = TimeZone.getDefault();
+            private ZoneId zone = ZoneId.systemDefault();
 
             private Builder() {
             }
 
+            /**
+             * Set the zone used for date strings without zone offsets
+             */
+            public Builder zone(ZoneId zone) {
+                this.zone = Objects.requireNonNull(zone);
+                return this;
+            }
+
+            /**
+             * Set the timeZone
+             *
+             * @see #zone(ZoneId)
+             */
+            public Builder timeZone(TimeZone timeZone) {
+                return zone(timeZone.toZoneId());
+            }
+
+            /**
+             * Add a fallback {@link DateTimeFormatter} for date strings not of the built-in
+             * shapes, fallbacks are tried in the order of being added
+             */
+            public Builder fallback(DateTimeFormatter fallback) {
+                if (fallback != null) this.fallbacks.add(fallback);
+                return this;
+            }
+
+            /**
+             * Add a fallback by the given pattern
+             *
+             * @see #fallback(DateTimeFormatter)
+             */
+            public Builder fallback(String pattern) {
+                return fallback(dtf(pattern));
+            }
+
+            /**
+             * Set the legacy fallback {@link DateFormat}, which is tried after all the others
+             *
+             * @deprecated use {@link #fallback(DateTimeFormatter)} instead
+             */
+            @Deprecated
+            public Builder fallback(DateFormat fallback) {
+                this.fallback = fallback;
+                return this;
+            }
+
             /**
              * Add a {@link DateFormat} to support a kind of brief date pattern, whose length must be 10
              * (for example: yyyy-MM-dd)
@@ -358,7 +1019,10 @@ public class Daty {
              * @param selector the selector who can predicate if the given pattern can be processed
              *                 by the related {@link DateFormat}
              * @param df       the {@link DateFormat}
+             * @deprecated the brief shapes are built in, use {@link #fallback(DateTimeFormatter)}
+             * for any other shape
              */
+            @Deprecated
             public Builder brief(Predicate<String> selector, DateFormat df) {
                 this.brief.put(selector, df);
                 return this;
@@ -371,7 +1035,10 @@ public class Daty {
              * @param selector the selector who can predicate if the given pattern can be processed
              *                 by the related {@link DateFormat}
              * @param df       the {@link DateFormat}
+             * @deprecated the wide shapes are built in, use {@link #fallback(DateTimeFormatter)}
+             * for any other shape
              */
+            @Deprecated
             public Builder wide(Predicate<String> selector, DateFormat df) {
                 this.wide.put(selector, df);
                 return this;
@@ -384,44 +1051,38 @@ public class Daty {
              * @param selector the selector who can predicate if the given pattern can be processed
              *                 by the related {@link DateFormat}
              * @param df       the {@link DateFormat}
+             * @deprecated the full shapes are built in, use {@link #fallback(DateTimeFormatter)}
+             * for any other shape
              */
+            @Deprecated
             public Builder full(Predicate<String> selector, DateFormat df) {
                 this.full.put(selector, df);
                 return this;
             }
 
-            public When when(Predicate<String> selector) {
-                return new When(selector);
-            }
-
-            /**
-             * Set the timeZone
-             */
-            public Builder timeZone(TimeZone timeZone) {
-                this.timeZone = timeZone;
-                return this;
-            }
-
             /**
-             * Set the fallback {@link DateFormat}
+             * @deprecated use {@link #fallback(DateTimeFormatter)} instead
              */
-            public Builder fallback(DateFormat fallback) {
-                this.fallback = fallback;
-                return this;
+            @Deprecated
+            public When when(Predicate<String> selector) {
+                return new When(selector);
             }
 
             /**
              * Build a {@link PolyParser}
              */
             public PolyParser build() {
-                // set timezone for each DateFormat of the formats
-                formats.values().forEach(Funny.bind(DateFormat::setTimeZone, timeZone));
-                return new PolyParser(brief, wide, full, fallback);
+                return new PolyParser(zone, fallbacks.toArray(new DateTimeFormatter[0]),
+                        new LinkedHashMap<>(brief), new LinkedHashMap<>(wide),
+                        new LinkedHashMap<>(full), fallback);
             }
 
             /**
-             * Hold a specific {@code selector} to more easily set {@link DateFormat}s
+             * Hold a specific {@code selector} to more easily set the legacy {@link DateFormat}s
+             *
+             * @deprecated use {@link Builder#fallback(DateTimeFormatter)} instead
              */
+            @Deprecated
             public class When {
 
                 private final Predicate<String> selector;
@@ -462,7 +1123,6 @@ public class Daty {
                 }
             }
         }
-
     }
 
     /**
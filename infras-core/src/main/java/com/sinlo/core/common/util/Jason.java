@@ -2,19 +2,28 @@ package com.sinlo.core.common.util;
 
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.*;
+import com.fasterxml.jackson.databind.deser.DefaultDeserializationContext;
+import com.fasterxml.jackson.databind.ser.DefaultSerializerProvider;
+import com.fasterxml.jackson.databind.ser.SerializerFactory;
 import com.sinlo.core.common.functional.TriConsumer;
 import com.sinlo.core.common.functional.TriFunction;
-import com.sinlo.core.common.wraparound.Cascader;
+import com.sinlo.sponte.util.Pool;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.lang.reflect.Type;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.function.BiFunction;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 /**
@@ -59,30 +68,31 @@ public class Jason {
      * @see ObjectMapper#readValue(String, Class)
      */
     public static <T> T parse(String json, Class<T> clz) {
-        try {
-            return om.readValue(json, clz);
-        } catch (JsonProcessingException e) {
-            throw new RuntimeException(e);
-        }
+        return codec(clz).parse(json);
     }
 
     /**
      * @see ObjectMapper#readValue(String, TypeReference)
      */
     public static <T> T parse(String json, TypeReference<T> typeReference) {
-        try {
-            return om.readValue(json, typeReference);
-        } catch (JsonProcessingException e) {
-            throw new RuntimeException(e);
-        }
+        return codec(typeReference).parse(json);
     }
 
     /**
      * @see ObjectMapper#writeValueAsBytes(Object)
      */
     public static byte[] serialize(Object obj) {
+        return serialize(obj, Mode.JSON);
+    }
+
+    /**
+     * Serialize the given object using the given {@link Mode}
+     *
+     * @see ObjectMapper#writeValueAsBytes(Object)
+     */
+    public static byte[] serialize(Object obj, Mode mode) {
         try {
-            return om.writeValueAsBytes(obj);
+            return mode.om().writeValueAsBytes(obj);
         } catch (JsonProcessingException e) {
             throw new RuntimeException(e);
         }
@@ -92,8 +102,17 @@ public class Jason {
      * @see ObjectMapper#readTree(byte[])
      */
     public static JsonNode deserialize(byte[] source) {
+        return deserialize(source, Mode.JSON);
+    }
+
+    /**
+     * Deserialize the given source using the given {@link Mode}
+     *
+     * @see ObjectMapper#readTree(byte[])
+     */
+    public static JsonNode deserialize(byte[] source, Mode mode) {
         try {
-            return om.readTree(source);
+            return mode.om().readTree(source);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -103,22 +122,68 @@ public class Jason {
      * @see ObjectMapper#readValue(String, Class)
      */
     public static <T> T deserialize(byte[] source, Class<T> clz) {
-        try {
-            return om.readValue(source, clz);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        return deserialize(source, clz, Mode.JSON);
+    }
+
+    /**
+     * Deserialize the given source using the given {@link Mode}
+     *
+     * @see ObjectMapper#readValue(byte[], Class)
+     */
+    public static <T> T deserialize(byte[] source, Class<T> clz, Mode mode) {
+        return codec(clz, mode, null).deserialize(source);
     }
 
     /**
      * @see ObjectMapper#readValue(byte[], TypeReference)
      */
     public static <T> T deserialize(byte[] source, TypeReference<T> typeReference) {
-        try {
-            return om.readValue(source, typeReference);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+        return deserialize(source, typeReference, Mode.JSON);
+    }
+
+    /**
+     * Deserialize the given source using the given {@link Mode}
+     *
+     * @see ObjectMapper#readValue(byte[], TypeReference)
+     */
+    public static <T> T deserialize(byte[] source, TypeReference<T> typeReference, Mode mode) {
+        return codec(typeReference, mode, null).deserialize(source);
+    }
+
+    /**
+     * Get the cached {@link Codec} of the given type
+     *
+     * @see #codec(Class, Mode, Class)
+     */
+    public static <T> Codec<T> codec(Class<T> clz) {
+        return codec(clz, Mode.JSON, null);
+    }
+
+    /**
+     * Get the cached {@link Codec} of the given type
+     *
+     * @see #codec(TypeReference, Mode, Class)
+     */
+    public static <T> Codec<T> codec(TypeReference<T> typeReference) {
+        return codec(typeReference, Mode.JSON, null);
+    }
+
+    /**
+     * Get the cached {@link Codec} of the given type, {@link Mode} and view
+     *
+     * @param view the json view, or null for none
+     */
+    public static <T> Codec<T> codec(Class<T> clz, Mode mode, Class<?> view) {
+        return mode.codec(clz, view);
+    }
+
+    /**
+     * Get the cached {@link Codec} of the given type, {@link Mode} and view
+     *
+     * @param view the json view, or null for none
+     */
+    public static <T> Codec<T> codec(TypeReference<T> typeReference, Mode mode, Class<?> view) {
+        return mode.codec(typeReference.getType(), view);
     }
 
     /**
@@ -133,16 +198,381 @@ public class Jason {
      */
     public static void df(DateFormat df) {
         om.setDateFormat(df);
+        Mode.reset();
     }
 
     public static void with(ObjectMapper om) {
         Jason.om = om;
+        Mode.reset();
     }
 
+    /**
+     * Configure the underlying {@link #om}, e.g. enabling features or registering modules,
+     * and drop the derived mappers and the cached {@link Codec}s so that the changes would
+     * take effect in all {@link Mode}s
+     */
+    public static void configure(Consumer<ObjectMapper> configurer) {
+        configurer.accept(om);
+        Mode.reset();
+    }
+
+    /**
+     * Get the underlying {@link ObjectMapper}. The cached {@link Codec}s and the mappers of the
+     * binary {@link Mode}s are snapshots of its configurations, they are dropped lazily once
+     * its configurations are found replaced, which is what the configuring methods of the
+     * {@link ObjectMapper} do, so that changing it directly takes effect as well. However the
+     * {@link Codec}s already held by callers stay as they are
+     */
     public static ObjectMapper om() {
         return om;
     }
 
+    /**
+     * The encoding modes sharing the same {@link #serialize}/{@link #deserialize} surface.
+     * The binary modes are derived from the {@link #om}, so that they share the same
+     * configurations, serializers and deserializers with it, and they need the corresponding
+     * jackson dataformat module to be present in the classpath
+     */
+    public enum Mode {
+
+        JSON("application/json", null),
+        /**
+         * Needs the {@code com.fasterxml.jackson.dataformat:jackson-dataformat-smile}
+         */
+        SMILE("application/x-jackson-smile", "com.fasterxml.jackson.dataformat.smile.SmileFactory"),
+        /**
+         * Needs the {@code com.fasterxml.jackson.dataformat:jackson-dataformat-cbor}
+         */
+        CBOR("application/cbor", "com.fasterxml.jackson.dataformat.cbor.CBORFactory");
+
+        /**
+         * The content type of the encoded data
+         */
+        public final String contentType;
+
+        /**
+         * The max number of cached {@link Codec}s of each view of a mode
+         */
+        private static final int CAPACITY = 1024;
+
+        private final String factory;
+
+        private volatile Derived derived;
+
+        Mode(String contentType, String factory) {
+            this.contentType = contentType;
+            this.factory = factory;
+        }
+
+        /**
+         * Negotiate the {@link Mode} regarding the given content type, any parameters of the
+         * content type are ignored
+         *
+         * @return the corresponding {@link Mode}, or {@link #JSON} if none matches
+         */
+        public static Mode of(String contentType) {
+            if (Strine.isEmpty(contentType)) return JSON;
+            int semi = contentType.indexOf(';');
+            String type = (semi == -1 ? contentType : contentType.substring(0, semi)).trim();
+            for (Mode mode : values()) {
+                if (mode.contentType.equalsIgnoreCase(type)) return mode;
+            }
+            return JSON;
+        }
+
+        /**
+         * Get the {@link ObjectMapper} of this mode
+         */
+        public ObjectMapper om() {
+            if (factory == null) return Jason.om;
+            return derived().om;
+        }
+
+        /**
+         * Get the {@link Derived} of the current {@link Jason#om}
+         */
+        private Derived derived() {
+            final ObjectMapper source = Jason.om;
+            Derived d = derived;
+            if (d == null || !d.of(source)) {
+                derived = d = new Derived(source,
+                        factory == null ? source : derive(source));
+            }
+            return d;
+        }
+
+        /**
+         * Get or create the {@link Codec} of the given type and view
+         */
+        @SuppressWarnings("unchecked")
+        private <T> Codec<T> codec(Type type, Class<?> view) {
+            final Derived d = derived();
+            Pool<Type, Codec<?>> codecs = view == null ? d.codecs : d.viewed.get(view);
+            if (codecs == null) {
+                codecs = d.viewed.get(view, Pool::new);
+            }
+            Codec<?> codec = codecs.get(type);
+            if (codec == null) {
+                final Codec<?> created = new Codec<>(
+                        this, d.om, d.om.getTypeFactory().constructType(type), view);
+                // beyond the capacity the codecs are still usable but no longer cached, so
+                // that types created on the fly could not grow the pool without bound
+                codec = codecs.values().size() < CAPACITY
+                        ? codecs.get(type, () -> created) : created;
+            }
+            return (Codec<T>) codec;
+        }
+
+        /**
+         * Derive an {@link ObjectMapper} of the {@link #factory} from the given source
+         */
+        private ObjectMapper derive(ObjectMapper source) {
+            final JsonFactory jf;
+            try {
+                jf = (JsonFactory) Class.forName(factory).getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException(String.format(
+                        "The mode [ %s ] requires the [ %s ] to be present in the classpath",
+                        this, factory), e);
+            }
+            ObjectMapper om = new ObjectMapper(jf,
+                    (DefaultSerializerProvider) source.getSerializerProvider(),
+                    (DefaultDeserializationContext) source.getDeserializationContext());
+            om.setSerializerFactory(source.getSerializerFactory());
+            om.setConfig(source.getSerializationConfig());
+            om.setConfig(source.getDeserializationConfig());
+            return om;
+        }
+
+        /**
+         * Drop all derived {@link ObjectMapper}s and cached {@link Codec}s so that they could
+         * be derived again from the current {@link #om}
+         */
+        private static void reset() {
+            for (Mode mode : values()) {
+                mode.derived = null;
+            }
+        }
+
+        private static class Derived {
+            private final ObjectMapper source;
+            private final ObjectMapper om;
+            private final Pool<Type, Codec<?>> codecs = new Pool<>();
+            private final Pool<Class<?>, Pool<Type, Codec<?>>> viewed = new Pool<>();
+
+            // the configurations of the source, which are immutable and replaced as a whole
+            // by the configuring methods of the ObjectMapper
+            private final SerializationConfig sc;
+            private final DeserializationConfig dc;
+            private final SerializerFactory sf;
+            private final SerializerProvider sp;
+            private final DeserializationContext ctx;
+
+            private Derived(ObjectMapper source, ObjectMapper om) {
+                this.source = source;
+                this.om = om;
+                this.sc = source.getSerializationConfig();
+                this.dc = source.getDeserializationConfig();
+                this.sf = source.getSerializerFactory();
+                this.sp = source.getSerializerProvider();
+                this.ctx = source.getDeserializationContext();
+            }
+
+            /**
+             * If this is derived from the given source as it is configured now
+             */
+            private boolean of(ObjectMapper source) {
+                return this.source == source
+                        && sc == source.getSerializationConfig()
+                        && dc == source.getDeserializationConfig()
+                        && sf == source.getSerializerFactory()
+                        && sp == source.getSerializerProvider()
+                        && ctx == source.getDeserializationContext();
+            }
+        }
+    }
+
+    /**
+     * The typed codec holding the pre-built {@link ObjectReader} and {@link ObjectWriter} of
+     * a specific type, {@link Mode} and view, which could be held and reused by callers. The
+     * writer is bound to the type if it is final, otherwise to each runtime type of the values
+     * met so far. Note that a held codec stays bound to the {@link ObjectMapper} it was created
+     * from
+     *
+     * @param <T> the type of the values
+     * @see #codec(Class, Mode, Class)
+     */
+    public static class Codec<T> {
+
+        /**
+         * The max number of the writers of runtime types of a codec
+         */
+        private static final int RUNTIME_TYPES = 16;
+
+        private final Mode mode;
+        private final ObjectReader reader;
+        private final ObjectWriter writer;
+        private final Pool<Class<?>, ObjectWriter> writers;
+
+        private Codec(Mode mode, ObjectMapper om, JavaType type, Class<?> view) {
+            this.mode = mode;
+            ObjectReader reader = om.readerFor(type);
+            // the root type is bound only when no subtype could be there, otherwise the
+            // runtime type of the value is honored just as the ObjectMapper does
+            final boolean bound = type.isFinal() || type.isPrimitive();
+            ObjectWriter writer = bound ? om.writerFor(type) : om.writer();
+            if (view != null) {
+                reader = reader.withView(view);
+                writer = writer.withView(view);
+            }
+            this.reader = reader;
+            this.writer = writer;
+            this.writers = bound ? null : new Pool<>();
+        }
+
+        /**
+         * Get the writer bound to the runtime type of the given value if the type of this
+         * codec is not final
+         */
+        private ObjectWriter writer(T t) {
+            if (writers == null || t == null) return writer;
+            final Class<?> type = t.getClass();
+            ObjectWriter w = writers.get(type);
+            if (w == null) {
+                final ObjectWriter created = writer.forType(type);
+                w = writers.values().size() < RUNTIME_TYPES
+                        ? writers.get(type, () -> created) : created;
+            }
+            return w;
+        }
+
+        /**
+         * @see ObjectReader#readValue(String)
+         */
+        public T parse(String json) {
+            try {
+                return reader.readValue(json);
+            } catch (JsonProcessingException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        /**
+         * @see ObjectReader#readValue(byte[])
+         */
+        public T deserialize(byte[] source) {
+            try {
+                return reader.readValue(source);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        /**
+         * @see ObjectReader#readValue(InputStream)
+         */
+        public T read(InputStream is) {
+            try {
+                return reader.readValue(is);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        /**
+         * @see ObjectReader#readValue(Reader)
+         */
+        public T read(Reader r) {
+            try {
+                return reader.readValue(r);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        /**
+         * Read a sequence of {@link T} from the given {@link InputStream} one by one, a
+         * root level array is unwrapped so that its elements are iterated instead
+         */
+        public MappingIterator<T> values(InputStream is) {
+            try {
+                return reader.readValues(is);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        /**
+         * Read a sequence of {@link T} from the given {@link Reader} one by one
+         *
+         * @see #values(InputStream)
+         */
+        public MappingIterator<T> values(Reader r) {
+            try {
+                return reader.readValues(r);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        /**
+         * Stringify the given value, this only makes sense in the {@link Mode#JSON}
+         *
+         * @see ObjectWriter#writeValueAsString(Object)
+         */
+        public String stringify(T t) {
+            try {
+                return writer(t).writeValueAsString(t);
+            } catch (JsonProcessingException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        /**
+         * @see ObjectWriter#writeValueAsBytes(Object)
+         */
+        public byte[] serialize(T t) {
+            try {
+                return writer(t).writeValueAsBytes(t);
+            } catch (JsonProcessingException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        /**
+         * @see ObjectWriter#writeValue(OutputStream, Object)
+         */
+        public void write(OutputStream os, T t) {
+            try {
+                writer(t).writeValue(os, t);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        /**
+         * Get the underlying {@link ObjectReader}
+         */
+        public ObjectReader reader() {
+            return reader;
+        }
+
+        /**
+         * Get the underlying {@link ObjectWriter}, which is not bound to any runtime type if
+         * the type of this codec is not final
+         */
+        public ObjectWriter writer() {
+            return writer;
+        }
+
+        /**
+         * Get the {@link Mode} this codec encodes in
+         */
+        public Mode mode() {
+            return mode;
+        }
+    }
+
     /**
      * Get a {@link Thingama.Bob} the json object builder, whose underlying
      * store is a {@link HashMap}
@@ -163,6 +593,49 @@ public class Jason {
         return new Thingama.Bob(supplier);
     }
 
+    /**
+     * Get a {@link Thingama.Bob} whose root store is a {@link HashMap} presized to hold
+     * the {@code expected} number of entries without rehashing, the sub-maps are plain
+     * {@link HashMap}s
+     */
+    public static Thingama.Bob map(int expected) {
+        return new Thingama.Bob(HashMap::new, new HashMap<>(capacity(expected)));
+    }
+
+    /**
+     * Get a {@link Doodle} writing json straight into the given {@link OutputStream}
+     *
+     * @see #doodle(OutputStream, Mode)
+     */
+    public static Doodle doodle(OutputStream os) {
+        return doodle(os, Mode.JSON);
+    }
+
+    /**
+     * Get a {@link Doodle} writing into the given {@link OutputStream} in the given
+     * {@link Mode}, the stream is closed along with the {@link Doodle}
+     */
+    public static Doodle doodle(OutputStream os, Mode mode) {
+        try {
+            return new Doodle(mode.om().getFactory().createGenerator(os), true);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Get a {@link Doodle} writing into the given {@link JsonGenerator}, which is only
+     * flushed but not closed along with the {@link Doodle}. Non-scalar values require
+     * the generator to have an {@link com.fasterxml.jackson.core.ObjectCodec}
+     */
+    public static Doodle doodle(JsonGenerator generator) {
+        return new Doodle(generator, false);
+    }
+
+    private static int capacity(int expected) {
+        return expected < 3 ? expected + 1 : (int) (expected / 0.75f + 1.0f);
+    }
+
     /**
      * The abstraction of {@link Thingama.Bob} and {@link Thingama.Jig}
      *
@@ -175,7 +648,12 @@ public class Jason {
         protected final Map<Object, Object> store;
 
         public Thingama(Supplier<Map<Object, Object>> supplier) {
-            this.store = (this.supplier = supplier).get();
+            this(supplier, supplier.get());
+        }
+
+        protected Thingama(Supplier<Map<Object, Object>> supplier, Map<Object, Object> store) {
+            this.supplier = supplier;
+            this.store = store;
         }
 
         /**
@@ -207,9 +685,8 @@ public class Jason {
          */
         public T val(Object key, Object... values) {
             // convert the given array to a list
-            ArrayList<Object> list = new ArrayList<>();
+            ArrayList<Object> list = new ArrayList<>(values.length);
             Collections.addAll(list, values);
-            store.put(key, list);
             return val(key, list);
         }
 
@@ -277,10 +754,15 @@ public class Jason {
         @SuppressWarnings({"rawtypes", "unchecked"})
         private static Object combine(Object v, Object value) {
             if (v == null) return value;
-            return (v instanceof List
-                    ? Cascader.of((List) v)
-                    : Cascader.of(ArrayList::new).apply(List::add, v))
-                    .apply(List::add, value).get();
+            List list;
+            if (v instanceof List) {
+                list = (List) v;
+            } else {
+                list = new ArrayList<>(4);
+                list.add(v);
+            }
+            list.add(value);
+            return list;
         }
 
         /**
@@ -321,6 +803,18 @@ public class Jason {
             return map(key, Thingama::merge);
         }
 
+        /**
+         * Write this json object into the given {@link OutputStream} without
+         * building the intermediate {@link String}, the stream is left open
+         */
+        public void write(OutputStream os) {
+            try {
+                om.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET).writeValue(os, store);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
         @Override
         public String toString() {
             return stringify(this);
@@ -349,6 +843,10 @@ public class Jason {
                 super(supplier);
             }
 
+            public Bob(Supplier<Map<Object, Object>> supplier, Map<Object, Object> store) {
+                super(supplier, store);
+            }
+
             /**
              * Map the key with a new {@link Jig}
              */
@@ -540,4 +1038,150 @@ public class Jason {
         }
     }
 
-}
\ No newline at end of file
+    /**
+     * Thingamadoodle is a json object builder writing directly into a {@link JsonGenerator}
+     * instead of building nested maps. Being a one pass writer it can not
+     * {@link Thingama#merge(Object, Object)}, so every key should be written only once
+     *
+     * @author sinlo
+     */
+    public static class Doodle implements AutoCloseable {
+
+        private final JsonGenerator generator;
+
+        private final boolean owned;
+
+        private int depth;
+
+        private Doodle(JsonGenerator generator, boolean owned) {
+            this.generator = Objects.requireNonNull(generator);
+            this.owned = owned;
+            try {
+                generator.writeStartObject();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            this.depth = 1;
+        }
+
+        /**
+         * Write a key/value pair
+         */
+        public Doodle val(Object key, Object value) {
+            try {
+                generator.writeFieldName(name(key));
+                generator.writeObject(value);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            return this;
+        }
+
+        /**
+         * Write the given values as an array
+         */
+        public Doodle val(Object key, Object... values) {
+            try {
+                generator.writeFieldName(name(key));
+                generator.writeStartArray();
+                for (Object value : values) {
+                    generator.writeObject(value);
+                }
+                generator.writeEndArray();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            return this;
+        }
+
+        /**
+         * Write the key/value only if the value is not null
+         */
+        public Doodle optional(Object key, Object value) {
+            if (value == null) return this;
+            return val(key, value);
+        }
+
+        /**
+         * Write all entries of the given {@link Map}
+         */
+        public Doodle copy(Map<?, ?> source) {
+            for (Map.Entry<?, ?> e : source.entrySet()) {
+                val(e.getKey(), e.getValue());
+            }
+            return this;
+        }
+
+        /**
+         * Start a sub-object associated with the given key, following writes go into
+         * it until {@link #end()}
+         */
+        public Doodle map(Object key) {
+            try {
+                generator.writeFieldName(name(key));
+                generator.writeStartObject();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            depth++;
+            return this;
+        }
+
+        /**
+         * End the current sub-object
+         */
+        public Doodle end() {
+            if (depth <= 1)
+                throw new IllegalStateException("There is no sub-object to end");
+            try {
+                generator.writeEndObject();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            depth--;
+            return this;
+        }
+
+        /**
+         * Write the given {@code val} along the given keys deep into the bottom and
+         * associate it with the last one
+         *
+         * @see Thingama.Val#into(Object...)
+         */
+        public Doodle plant(Object val, Object... keys) {
+            int last = Objects.requireNonNull(keys).length - 1;
+            if (last < 0) return this;
+            for (int i = 0; i < last; i++) {
+                map(keys[i]);
+            }
+            val(keys[last], val);
+            for (int i = 0; i < last; i++) {
+                end();
+            }
+            return this;
+        }
+
+        /**
+         * End all open objects and close or flush the underlying {@link JsonGenerator}
+         */
+        @Override
+        public void close() {
+            try {
+                for (; depth > 0; depth--) {
+                    generator.writeEndObject();
+                }
+                if (owned) generator.close();
+                else generator.flush();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        private static String name(Object key) {
+            if (key == null)
+                throw new IllegalArgumentException("Key must not be null");
+            return key.toString();
+        }
+    }
+
+}
@@ -37,6 +37,15 @@ public class SureThreadLocal<T> {
         return t;
     }
 
+    /**
+     * Get the value of the current thread without creating it
+     *
+     * @return null if there's none
+     */
+    public T peek() {
+        return local.get();
+    }
+
     public SureThreadLocal<T> set(T t) {
         local.set(t);
         return this;
@@ -8,9 +8,16 @@ import com.sinlo.core.domain.persistor.spec.Selector;
 import com.sinlo.core.domain.persistor.spec.Tag;
 import com.sinlo.core.domain.persistor.util.ReposSelector;
 import com.sinlo.core.common.wraparound.SureThreadLocal;
+import com.sinlo.core.prototype.Prototype;
+import com.sinlo.core.prototype.spec.Detail;
 import com.sinlo.sponte.util.Pool;
+import com.sinlo.sponte.util.Typer;
 
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
@@ -24,12 +31,18 @@ public class Persistor<T extends Entity> {
 
     private static final Pool.Simple<Persistor<?>> pool = new Pool.Simple<>();
 
-    private final SureThreadLocal<List<String>> tagged = SureThreadLocal.of(LinkedList::new);
-    private final SureThreadLocal<Map<String, Tag<T>>> entities = SureThreadLocal.of(HashMap::new);
+    // in the order of being tagged
+    private final SureThreadLocal<Map<Entity.Key, Tag<T>>> entities =
+            SureThreadLocal.of(LinkedHashMap::new);
+    private final SureThreadLocal<Map<Entity.Key, T>> snapshots = SureThreadLocal.of(HashMap::new);
+    private final SureThreadLocal<Unit<T>> unit = SureThreadLocal.of(Unit::new);
 
     private final Eveny<State, Tag<T>> fine = new Eveny<>();
     private final Eveny<State, Void> rough = new Eveny<>();
     private final Eveny<Persistor<T>, Tag<T>.Ex> except = new Eveny<>();
+    private final Eveny<Persistor<T>, Tag<T>> compensate = new Eveny<>();
+
+    private volatile WriteBehind<T> behind;
 
     private Persistor() {
     }
@@ -57,6 +70,31 @@ public class Persistor<T extends Entity> {
         return null;
     }
 
+    /**
+     * Snapshot the given entity as it is loaded from the repository inside a
+     * {@link #scope(Selector, Callable) scope}, so that updating it later commits only the
+     * properties changed since, and commits nothing if none is changed. The snapshot is a
+     * shallow copy by {@link Prototype}, which means the changes made inside a mutable
+     * property value could not be told, and lasts till the end of the outermost scope.
+     * Outside any scope nothing is snapshot, as nothing is sure to drop it, and an update
+     * of the entity is committed as a whole
+     *
+     * @return the given entity
+     * @see Repo#update(Entity, Set)
+     */
+    @SuppressWarnings("unchecked")
+    public T load(T entity) {
+        if (entity == null) return null;
+        Unit<T> unit = this.unit.peek();
+        if (unit == null || unit.depth == 0) return entity;
+        Class<T> c = (Class<T>) entity.getClass();
+        T snapshot = Typer.create(c);
+        if (snapshot != null) {
+            snapshots.get().put(entity.ident(), Prototype.of(c).stub(snapshot).copy(entity));
+        }
+        return entity;
+    }
+
     /**
      * Tag the given entity to the specific channel leniently
      */
@@ -66,7 +104,10 @@ public class Persistor<T extends Entity> {
     }
 
     /**
-     * Tag the given entity to the specific channel
+     * Tag the given entity to the specific channel. Tagging the same entity again folds
+     * the channels into one net operation by {@link Tag.Channel#then(Tag.Channel)}, e.g.
+     * create and then delete leaves nothing to commit, while an update after a delete is
+     * a conflict
      *
      * @param channel   the specific channel
      * @param entity    the given entity
@@ -78,42 +119,70 @@ public class Persistor<T extends Entity> {
         if (entity == null)
             throw new IllegalArgumentException("The [ entity ] should not be null");
 
-        String key = entity.key();
-        if (!entities.get().containsKey(key)) {
-            tagged.get().add(key);
-        } else if (exclusive) {
-            throw new Tag.ChannelConflictingException(key, stat(entity));
+        Entity.Key key = entity.ident();
+        Map<Entity.Key, Tag<T>> entities = this.entities.get();
+        Tag<T> previous = entities.get(key);
+        if (previous == null) {
+            this.put(entities, key, new Tag<>(channel, entity));
+            return this;
+        }
+        if (exclusive || (previous.chan == Tag.Channel.DELETE && channel == Tag.Channel.UPDATE)) {
+            throw new Tag.ChannelConflictingException(key.toString(), previous.chan);
         }
-        entities.get().put(key, new Tag<>(channel, entity));
+        // fold into one net operation
+        Tag.Channel net = previous.chan.then(channel);
+        this.put(entities, key, net == null ? null : new Tag<>(net, entity));
         return this;
     }
 
+    /**
+     * Put the given tag, or remove the one of the given key if it is null, logging the
+     * replaced one if inside a nested {@link #scope(Selector, Callable) scope}
+     */
+    private void put(Map<Entity.Key, Tag<T>> entities, Entity.Key key, Tag<T> tag) {
+        Tag<T> previous = tag == null ? entities.remove(key) : entities.put(key, tag);
+        Unit<T> unit = this.unit.peek();
+        if (unit != null && unit.depth > 1) {
+            unit.undo.add(new AbstractMap.SimpleImmutableEntry<>(key, previous));
+        }
+    }
+
     /**
      * get the status of the given entity
      */
     public Tag.Channel stat(T entity) {
         if (entity == null) return null;
-        Tag<T> tag = entities.get().get(entity.key());
+        Tag<T> tag = entities.get().get(entity.ident());
         if (tag != null)
             return tag.chan;
         return null;
     }
 
+    /**
+     * @return true if any entity is tagged and not yet committed in the current thread
+     */
+    public boolean pending() {
+        Map<Entity.Key, Tag<T>> entities = this.entities.peek();
+        return entities != null && !entities.isEmpty();
+    }
+
     /**
      * remove a tagged entities
      *
      * @param keys the keys of entities to be removed
      */
     public Persistor<T> untag(String... keys) {
+        Map<Entity.Key, Tag<T>> entities = this.entities.get();
         for (String key : keys) {
-            tagged.get().remove(key);
-            entities.get().remove(key);
+            Entity.Key k = Entity.Key.of(key);
+            if (entities.containsKey(k)) this.put(entities, k, null);
         }
         return this;
     }
 
     /**
-     * commit all tagged entities by using a given consumer
+     * commit all tagged entities by using a given consumer, or queue them to be committed
+     * in the background if {@link #behind(WriteBehind) written behind}
      *
      * @param consumer the consumer who commits entities
      */
@@ -121,53 +190,223 @@ public class Persistor<T extends Entity> {
         if (consumer == null)
             throw new RuntimeException(
                     "Expecting a valid consumer yet got null");
+        this.dispatch(tag -> consumer.accept(tag.chan, tag.entity));
+    }
+
+    /**
+     * Commit all tagged entities by using the given consumer of {@link Tag tags}, skipping
+     * the updates which change nothing
+     */
+    private void dispatch(Consumer<Tag<T>> consumer) {
+        WriteBehind<T> behind = this.behind;
+        if (behind != null) {
+            try {
+                entities.get().forEach((k, t) -> {
+                    Tag<T> tag = settle(k, t);
+                    if (tag != null) behind.offer(tag, consumer);
+                });
+            } finally {
+                this.clear();
+            }
+            return;
+        }
         // before the entire committing process
-        rough.fire(State.FORE, null);
+        rough(State.FORE);
         try {
-            tagged.get().forEach(k -> {
-                Tag<T> tag = entities.get().get(k);
-                try {
-                    // before this tag's committing
-                    fine.fire(State.FORE, tag);
-                    consumer.accept(tag.chan, tag.entity);
-                    // after this tag's committing
-                    fine.fire(State.AFT, tag);
-                } catch (RuntimeException e) {
-                    // caught an exception
-                    except.fire(this, tag.new Ex(e));
-                    throw e;
-                }
+            entities.get().forEach((k, t) -> {
+                Tag<T> tag = settle(k, t);
+                if (tag != null) write(tag, consumer);
             });
             // after the entire committing process
-            rough.fire(State.AFT, null);
+            rough(State.AFT);
         } finally {
             this.clear();
         }
     }
 
+    /**
+     * Settle the dirty properties of the given {@link Tag} if it is an update of a
+     * {@link #load(Entity) loaded} entity
+     *
+     * @return null if nothing is changed
+     */
+    @SuppressWarnings("unchecked")
+    private Tag<T> settle(Entity.Key key, Tag<T> tag) {
+        if (tag.chan != Tag.Channel.UPDATE) return tag;
+        Map<Entity.Key, T> snapshots = this.snapshots.peek();
+        T snapshot = snapshots == null ? null : snapshots.get(key);
+        if (snapshot == null) return tag;
+        Set<String> dirty = new LinkedHashSet<>();
+        for (Detail detail : Prototype.of((Class<T>) tag.entity.getClass())
+                .compare(snapshot, tag.entity)) {
+            dirty.add(detail.name);
+        }
+        return dirty.isEmpty() ? null
+                : new Tag<>(tag.chan, tag.entity, Collections.unmodifiableSet(dirty));
+    }
+
+    /**
+     * Commit the given tag by using the given consumer
+     */
+    void write(Tag<T> tag, Consumer<Tag<T>> consumer) {
+        try {
+            // before this tag's committing
+            fine.fire(State.FORE, tag);
+            consumer.accept(tag);
+            // after this tag's committing
+            fine.fire(State.AFT, tag);
+        } catch (RuntimeException e) {
+            // caught an exception
+            except.fire(this, tag.new Ex(e));
+            throw e;
+        }
+    }
+
+    void rough(State state) {
+        rough.fire(state, null);
+    }
+
+    /**
+     * Commit in the write-behind mode by the given {@link WriteBehind}, or commit right in
+     * the calling thread again if it is null. The previous {@link WriteBehind} if any is
+     * closed after all its queued entities are written
+     */
+    public synchronized Persistor<T> behind(WriteBehind<T> behind) {
+        if (behind != null) behind.start(this);
+        WriteBehind<T> previous = this.behind;
+        this.behind = behind;
+        if (previous != null) previous.close();
+        return this;
+    }
+
+    /**
+     * @return the future completed once all the entities committed before are written,
+     * which is already completed if not {@link #behind(WriteBehind) written behind}
+     * @see WriteBehind#flush()
+     */
+    public CompletableFuture<Void> flush() {
+        WriteBehind<T> behind = this.behind;
+        return behind == null ? CompletableFuture.completedFuture(null) : behind.flush();
+    }
+
     /**
      * commit all tagged entities by using a specific selector
      */
     @SuppressWarnings("unchecked")
     public final void commit(Selector<T> selector) {
         Selector<T> sel = selector == null ? Selector.ZERO_VALUE : selector;
-        this.commit((chan, entity) -> {
-            Repo<T> repo = sel.select(entity);
-            if (repo == null) return;
-            switch (chan) {
-                case CREATE:
-                    repo.create(entity);
-                    break;
-                case UPDATE:
-                    repo.update(entity);
-                    break;
-                case DELETE:
-                    repo.delete(entity);
-                    break;
-                default:
+        this.dispatch(tag -> {
+            Repo<T> repo = sel.select(tag.entity);
+            if (repo != null) persist(repo, tag);
+        });
+    }
+
+    /**
+     * Commit all tagged entities by using a specific selector, the entities of different
+     * repositories are committed concurrently by the given executor while the ones of the
+     * same repository are committed in the order of being tagged. The repositories not yet
+     * done stop at the first failure, which is thrown after the {@link #compensate(Consumer)
+     * compensate} handlers are called on every entity already committed. That includes an
+     * {@link Error} thrown by a repository and the executor rejecting a repository, in which
+     * case the ones already submitted are still waited for
+     * <br/>
+     * The executor bounds the concurrency, and the calling thread commits one of the
+     * repositories itself. It is the same as {@link #commit(Selector)} if
+     * {@link #behind(WriteBehind) written behind} or the given executor is null
+     */
+    @SuppressWarnings("unchecked")
+    public final void commit(Executor executor, Selector<T> selector) {
+        if (executor == null || this.behind != null) {
+            this.commit(selector);
+            return;
+        }
+        Selector<T> sel = selector == null ? Selector.ZERO_VALUE : selector;
+        // group by repositories in the order of being tagged
+        Map<Repo<T>, List<Tag<T>>> groups = new LinkedHashMap<>();
+        try {
+            for (Map.Entry<Entity.Key, Tag<T>> entry : entities.get().entrySet()) {
+                Tag<T> tag = settle(entry.getKey(), entry.getValue());
+                if (tag == null) continue;
+                Repo<T> repo = sel.select(tag.entity);
+                if (repo == null) continue;
+                groups.computeIfAbsent(repo, r -> new ArrayList<>()).add(tag);
+            }
+        } finally {
+            this.clear();
+        }
+
+        rough(State.FORE);
+        // errors included, so that whatever stops a repository the committed are compensated
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Tag<T>> committed = Collections.synchronizedList(new ArrayList<>());
+        List<CompletableFuture<Void>> runs = new ArrayList<>(groups.size());
+        Runnable last = null;
+        for (Map.Entry<Repo<T>, List<Tag<T>>> group : groups.entrySet()) {
+            if (last != null) {
+                try {
+                    runs.add(CompletableFuture.runAsync(last, executor));
+                } catch (RuntimeException e) {
+                    // e.g. rejected, the ones submitted stop as soon as they see it
+                    failure.compareAndSet(null, e);
+                    last = null;
                     break;
+                }
             }
-        });
+            last = () -> {
+                for (Tag<T> tag : group.getValue()) {
+                    if (failure.get() != null) return;
+                    try {
+                        write(tag, t -> persist(group.getKey(), t));
+                        committed.add(tag);
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                        return;
+                    }
+                }
+            };
+        }
+        if (last != null) last.run();
+        // never completed exceptionally as the runs catch everything
+        CompletableFuture.allOf(runs.toArray(new CompletableFuture<?>[0])).join();
+
+        Throwable e = failure.get();
+        if (e != null) {
+            for (int i = committed.size() - 1; i >= 0; i--) {
+                compensate.fire(this, committed.get(i));
+            }
+            Try.toss(e);
+        }
+        rough(State.AFT);
+    }
+
+    /**
+     * Commit all tagged entities by using all the given repositories concurrently
+     *
+     * @see #commit(Executor, Selector)
+     */
+    @SafeVarargs
+    public final void commit(Executor executor, Repo<? extends T>... repos) {
+        this.commit(executor, new ReposSelector<>(repos));
+    }
+
+    /**
+     * Persist the given {@link Tag} by the given {@link Repo} according to its channel
+     */
+    private static <T extends Entity> void persist(Repo<T> repo, Tag<T> tag) {
+        switch (tag.chan) {
+            case CREATE:
+                repo.create(tag.entity);
+                break;
+            case UPDATE:
+                if (tag.dirty == null) repo.update(tag.entity);
+                else repo.update(tag.entity, tag.dirty);
+                break;
+            case DELETE:
+                repo.delete(tag.entity);
+                break;
+            default:
+                break;
+        }
     }
 
     /**
@@ -181,8 +420,97 @@ public class Persistor<T extends Entity> {
     }
 
     public void clear() {
-        tagged.get().clear();
-        entities.get().clear();
+        Map<Entity.Key, Tag<T>> entities = this.entities.peek();
+        if (entities != null) entities.clear();
+        Map<Entity.Key, T> snapshots = this.snapshots.peek();
+        if (snapshots != null) snapshots.clear();
+        Unit<T> unit = this.unit.peek();
+        if (unit != null && !unit.undo.isEmpty()) {
+            unit.undo.clear();
+            unit.cleared++;
+        }
+    }
+
+    /**
+     * Call the given procedure as a unit of work, the entities tagged inside are committed
+     * by the given selector after it returns, or dropped if it throws. Nothing is committed
+     * nor fired if nothing is tagged.
+     * <br/>
+     * A unit of work inside another one of the same thread joins the outer one, which
+     * commits all the entities at last. The repository of each entity is selected by the
+     * selector of the outermost scope first, then by the ones of the nested scopes in the
+     * order of being entered, so that a nested scope of a different selector still has its
+     * entities committed. If a nested scope throws, the tags made inside it are undone and
+     * the outer one goes on as if it was never called, or drops all if it throws as well.
+     * Note that a nested scope commits nothing by itself, its entities are neither written
+     * when it returns nor at all if the outer one throws, unlike a nested {@link Stub}
+     * which commits all the tagged entities of the thread once closed
+     */
+    public <R> R scope(Selector<T> selector, Callable<R> proc) {
+        Unit<T> unit = this.unit.get();
+        boolean outermost = unit.depth++ == 0;
+        if (selector != null && !unit.selectors.contains(selector)) unit.selectors.add(selector);
+        // where the undo log of a nested scope starts
+        int mark = unit.undo.size();
+        int cleared = unit.cleared;
+        boolean returned = false;
+        try {
+            R r = proc.call();
+            returned = true;
+            return r;
+        } catch (Exception e) {
+            return Try.toss(e);
+        } finally {
+            unit.depth--;
+            if (outermost) {
+                Selector<T> sel = unit.selector();
+                unit.selectors.clear();
+                if (returned && pending()) this.commit(sel);
+                else this.clear();
+            } else if (!returned) {
+                // all logged since are of this scope if it was cleared inside
+                unit.undo(this.entities.get(), unit.cleared == cleared ? mark : 0);
+            } else if (unit.depth == 1) {
+                // nothing to undo once back in the outermost scope
+                unit.undo.clear();
+            }
+        }
+    }
+
+    /**
+     * The unit of work of a thread, of the depth of the scopes entered and their selectors,
+     * and the undo log of the tags replaced inside the nested scopes
+     */
+    private static final class Unit<T extends Entity> {
+        private int depth;
+        private int cleared;
+        private final List<Selector<T>> selectors = new ArrayList<>(1);
+        private final List<Map.Entry<Entity.Key, Tag<T>>> undo = new ArrayList<>();
+
+        /**
+         * Put back the tags replaced since the given mark of the undo log in reverse, an
+         * entity untagged and then tagged back this way comes last in the order of commit
+         */
+        private void undo(Map<Entity.Key, Tag<T>> entities, int mark) {
+            for (int i = undo.size() - 1; i >= mark; i--) {
+                Map.Entry<Entity.Key, Tag<T>> e = undo.get(i);
+                if (e.getValue() == null) entities.remove(e.getKey());
+                else entities.put(e.getKey(), e.getValue());
+            }
+            undo.subList(mark, undo.size()).clear();
+        }
+
+        private Selector<T> selector() {
+            if (selectors.size() < 2) return selectors.isEmpty() ? null : selectors.get(0);
+            List<Selector<T>> all = new ArrayList<>(selectors);
+            return t -> {
+                for (Selector<T> s : all) {
+                    Repo<T> repo = s.select(t);
+                    if (repo != null) return repo;
+                }
+                return null;
+            };
+        }
     }
 
     /**
@@ -229,6 +557,16 @@ public class Persistor<T extends Entity> {
         return this;
     }
 
+    /**
+     * Call the consumer on every entity already committed when a
+     * {@link #commit(Executor, Selector) concurrent commit} fails, in the reverse order of
+     * being committed, so that they could be undone
+     */
+    public Persistor<T> compensate(Consumer<Tag<T>> then) {
+        compensate.on(this, then);
+        return this;
+    }
+
     public class Stub implements AutoCloseable {
         private Selector<T> using;
 
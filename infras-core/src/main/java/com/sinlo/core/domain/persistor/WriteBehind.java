@@ -0,0 +1,372 @@
+package com.sinlo.core.domain.persistor;
+
+import com.sinlo.core.domain.persistor.spec.Entity;
+import com.sinlo.core.domain.persistor.spec.Tag;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * The write-behind mode of a {@link Persistor}, in which {@link Persistor#commit(BiConsumer)}
+ * hands the tagged entities to bounded in-memory queues and returns at once, and the
+ * background workers write them in batches
+ * <br/>
+ * The entities of the same key always go to the same worker, so that they are written in
+ * the order of being committed. A write that fails is reported to the
+ * {@link Persistor#except(java.util.function.Consumer)} handlers and retried in the next
+ * batch together with the ones after it, until it has failed {@link #attempts(int)} times,
+ * and then the next {@link #flush()} completes exceptionally by a {@link GivenUp}. An
+ * {@link Error} is retried the same way and reported to the uncaught exception handler of
+ * the worker thread, except a {@link VirtualMachineError} which kills the worker, failing
+ * its flushes and refusing the entities of its keys from then on. The entities are written
+ * as they are at the time of writing, not of committing
+ *
+ * @author sinlo
+ * @see Persistor#behind(WriteBehind)
+ * @see Persistor#flush()
+ */
+public class WriteBehind<T extends Entity> implements AutoCloseable {
+
+    private final int capacity;
+    private int workers = 1;
+    private int size = 64;
+    private long interval = 100;
+    private int attempts = 3;
+
+    private Persistor<T> persistor;
+    private List<Worker> lanes;
+    private volatile boolean closed;
+    private volatile boolean stopped;
+    /**
+     * The offers and flushes share it while the {@link #close()} takes it exclusively, so
+     * that no offer could slip in after the final flush
+     */
+    private final ReadWriteLock closing = new ReentrantReadWriteLock();
+
+    private WriteBehind(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("The capacity should be positive");
+        this.capacity = capacity;
+    }
+
+    /**
+     * @param capacity the max number of entities waiting in the queues, committing blocks
+     *                 once it is reached
+     */
+    public static <T extends Entity> WriteBehind<T> of(int capacity) {
+        return new WriteBehind<>(capacity);
+    }
+
+    /**
+     * The number of background workers, 1 by default
+     */
+    public WriteBehind<T> workers(int workers) {
+        if (workers <= 0)
+            throw new IllegalArgumentException("There should be at least one worker");
+        this.workers = workers;
+        return this;
+    }
+
+    /**
+     * The max number of entities written in one batch, 64 by default
+     */
+    public WriteBehind<T> batch(int size) {
+        if (size <= 0)
+            throw new IllegalArgumentException("The batch size should be positive");
+        this.size = size;
+        return this;
+    }
+
+    /**
+     * The max millis an entity waits for its batch to fill up, 100 by default. It is also
+     * the pause before retrying a failed batch
+     */
+    public WriteBehind<T> interval(long millis) {
+        if (millis < 0)
+            throw new IllegalArgumentException("The interval should not be negative");
+        this.interval = millis;
+        return this;
+    }
+
+    /**
+     * The max times of writing an entity before giving it up, 3 by default
+     */
+    public WriteBehind<T> attempts(int attempts) {
+        if (attempts <= 0)
+            throw new IllegalArgumentException("There should be at least one attempt");
+        this.attempts = attempts;
+        return this;
+    }
+
+    /**
+     * Start the workers writing for the given {@link Persistor}
+     */
+    synchronized void start(Persistor<T> persistor) {
+        if (this.persistor != null)
+            throw new IllegalStateException("The write-behind has already been started");
+        this.persistor = persistor;
+        this.lanes = new ArrayList<>(workers);
+        int each = Math.max(1, capacity / workers);
+        for (int i = 0; i < workers; i++) {
+            Worker lane = new Worker(each);
+            Thread t = new Thread(lane, "persistor-behind-" + i);
+            t.setDaemon(true);
+            lane.thread = t;
+            lanes.add(lane);
+            t.start();
+        }
+    }
+
+    /**
+     * Queue the given {@link Tag} to be written by the given {@code consumer}, blocking while
+     * the queue of its worker is full
+     */
+    void offer(Tag<T> tag, Consumer<Tag<T>> consumer) {
+        closing.readLock().lock();
+        try {
+            if (closed)
+                throw new IllegalStateException("The write-behind has been closed");
+            Worker lane = lanes.get((tag.entity.ident().hashCode() & Integer.MAX_VALUE) % lanes.size());
+            if (lane.fatal != null)
+                throw new IllegalStateException("The worker of the entity has died", lane.fatal);
+            put(lane, new Item<>(tag, consumer, null));
+        } finally {
+            closing.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the future completed once all the entities queued before are written or
+     * given up, exceptionally by a {@link GivenUp} if any entity of a worker has been given
+     * up since the previous flush of it
+     */
+    public CompletableFuture<Void> flush() {
+        closing.readLock().lock();
+        try {
+            if (lanes == null || stopped) return CompletableFuture.completedFuture(null);
+            CompletableFuture<?>[] flushed = new CompletableFuture<?>[lanes.size()];
+            for (int i = 0; i < flushed.length; i++) {
+                CompletableFuture<Void> marker = new CompletableFuture<>();
+                Worker lane = lanes.get(i);
+                flushed[i] = marker;
+                Item<T> item = new Item<>(null, null, marker);
+                if (lane.fatal == null) {
+                    put(lane, item);
+                    // unless dying in the meantime, the marker is completed by the worker
+                    if (lane.fatal == null || !lane.queue.remove(item)) continue;
+                }
+                marker.completeExceptionally(new GivenUp(Collections.emptyList(), lane.fatal));
+            }
+            return CompletableFuture.allOf(flushed);
+        } finally {
+            closing.readLock().unlock();
+        }
+    }
+
+    /**
+     * Flush all and stop the workers, no more entity would be accepted
+     */
+    @Override
+    public void close() {
+        closing.writeLock().lock();
+        try {
+            if (closed) return;
+            closed = true;
+        } finally {
+            closing.writeLock().unlock();
+        }
+        try {
+            flush().join();
+        } catch (CompletionException ignored) {
+            // the given up ones have been reported
+        }
+        if (lanes == null) return;
+        closing.writeLock().lock();
+        try {
+            // any flush from now on is done at once, and the ones before are queued already
+            stopped = true;
+        } finally {
+            closing.writeLock().unlock();
+        }
+        for (Worker lane : lanes) {
+            lane.thread.interrupt();
+        }
+    }
+
+    private void put(Worker lane, Item<T> item) {
+        try {
+            lane.queue.put(item);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while queueing", e);
+        }
+    }
+
+    /**
+     * The entities given up after the {@link #attempts(int)}
+     */
+    public static class GivenUp extends RuntimeException {
+
+        /**
+         * The {@link Tag}s given up
+         */
+        public final List<Tag<?>> tags;
+
+        GivenUp(List<Tag<?>> tags, Throwable last) {
+            super(String.format("[ %s ] entities are given up", tags.size()), last);
+            this.tags = tags;
+        }
+    }
+
+    private static class Item<T extends Entity> {
+        private final Tag<T> tag;
+        private final Consumer<Tag<T>> consumer;
+        /**
+         * Not null if this is the marker of a {@link #flush()}
+         */
+        private final CompletableFuture<Void> marker;
+        private int attempts;
+
+        private Item(Tag<T> tag, Consumer<Tag<T>> consumer,
+                     CompletableFuture<Void> marker) {
+            this.tag = tag;
+            this.consumer = consumer;
+            this.marker = marker;
+        }
+    }
+
+    private class Worker implements Runnable {
+
+        private final BlockingQueue<Item<T>> queue;
+        private final List<Item<T>> batch = new ArrayList<>();
+        /**
+         * The ones given up since the previous flush marker, and the last cause
+         */
+        private final List<Tag<?>> givenUp = new ArrayList<>();
+        private Throwable cause;
+        private Thread thread;
+        private volatile Throwable fatal;
+
+        private Worker(int capacity) {
+            this.queue = new LinkedBlockingQueue<>(capacity);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    fill();
+                    if (!batch.isEmpty() && !write()) {
+                        // pause before retrying the failed one
+                        TimeUnit.MILLISECONDS.sleep(interval);
+                    }
+                }
+            } catch (InterruptedException ignored) {
+                // closed
+            } catch (VirtualMachineError e) {
+                fatal = e;
+                throw e;
+            } finally {
+                abandon();
+            }
+        }
+
+        /**
+         * Complete the markers left when exiting, so that no flush racing with the closing
+         * or the death of this worker waits forever
+         */
+        private void abandon() {
+            List<Item<T>> left = new ArrayList<>(batch);
+            batch.clear();
+            queue.drainTo(left);
+            for (Item<T> item : left) {
+                if (item.marker != null) mark(item.marker);
+                else givenUp.add(item.tag);
+            }
+        }
+
+        /**
+         * Complete the given marker, exceptionally if any has been given up since the
+         * previous one
+         */
+        private void mark(CompletableFuture<Void> marker) {
+            if (givenUp.isEmpty() && fatal == null) {
+                marker.complete(null);
+                return;
+            }
+            marker.completeExceptionally(new GivenUp(new ArrayList<>(givenUp),
+                    fatal != null ? fatal : cause));
+            givenUp.clear();
+            cause = null;
+        }
+
+        /**
+         * Fill the {@link #batch} until it is full, flushed, or has waited long enough
+         */
+        private void fill() throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(interval);
+            while (batch.size() < size && !flushed()) {
+                Item<T> item;
+                if (batch.isEmpty()) {
+                    item = queue.take();
+                    deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(interval);
+                } else {
+                    long left = deadline - System.nanoTime();
+                    item = left > 0 ? queue.poll(left, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (item == null) return;
+                }
+                batch.add(item);
+            }
+        }
+
+        private boolean flushed() {
+            return !batch.isEmpty() && batch.get(batch.size() - 1).marker != null;
+        }
+
+        /**
+         * Write the {@link #batch} in order
+         *
+         * @return false if a write failed, which is kept in the {@link #batch} along with
+         * the ones after it
+         */
+        private boolean write() {
+            persistor.rough(Persistor.State.FORE);
+            for (int i = 0; i < batch.size(); i++) {
+                Item<T> item = batch.get(i);
+                if (item.marker != null) {
+                    mark(item.marker);
+                    continue;
+                }
+                try {
+                    persistor.write(item.tag, item.consumer);
+                } catch (VirtualMachineError e) {
+                    throw e;
+                } catch (RuntimeException | Error e) {
+                    // the exceptions have been reported to the except handlers
+                    if (e instanceof Error) thread.getUncaughtExceptionHandler()
+                            .uncaughtException(thread, e);
+                    // an error must not kill the worker, or else the flushes never complete
+                    if (++item.attempts < attempts) {
+                        batch.subList(0, i).clear();
+                        return false;
+                    }
+                    givenUp.add(item.tag);
+                    cause = e;
+                }
+            }
+            batch.clear();
+            persistor.rough(Persistor.State.AFT);
+            return true;
+        }
+    }
+}
@@ -2,6 +2,8 @@ package com.sinlo.core.domain.persistor.spec;
 
 import com.sinlo.core.domain.persistor.Persistor;
 
+import java.util.Objects;
+
 /**
  * Entity the domain entity
  *
@@ -33,15 +35,27 @@ public interface Entity {
     }
 
     /**
-     * @return the entity key
+     * @return the entity key, which is the string form of the {@link #ident()}
      */
     default String key() {
+        if (Key.overridden(getClass(), Key.IDENT)) return ident().toString();
         String id = id();
         return getClass().getName()
                 + "#"
                 + (id == null ? String.valueOf(this.hashCode()) : id);
     }
 
+    /**
+     * @return the {@link Key} of this entity, of its class and its id, or its hash code if
+     * the id is null. If the {@link #key()} is overridden, it is the {@link Key} of that
+     * instead, so that the entities are still told apart by the {@link #key()}
+     */
+    default Key ident() {
+        if (Key.overridden(getClass(), Key.KEY)) return Key.of(key());
+        String id = id();
+        return new Key(getClass().getName(), id == null ? String.valueOf(this.hashCode()) : id);
+    }
+
     /**
      * tag as create
      */
@@ -53,13 +67,8 @@ public interface Entity {
      * tag as update
      */
     default void update() {
-        if (persistor().stat(this) == Tag.Channel.CREATE) {
-            // as long as this is tagged as create, it infers that there's no existing entity
-            // in the repository, thus here it should be tagged as create as well
-            create();
-        } else {
-            persistor().tag(Tag.Channel.UPDATE, this);
-        }
+        // an update after a create is folded into the create by the persistor
+        persistor().tag(Tag.Channel.UPDATE, this);
     }
 
     /**
@@ -68,4 +77,104 @@ public interface Entity {
     default void delete() {
         persistor().tag(Tag.Channel.DELETE, this);
     }
+
+    /**
+     * The key of an entity, which hashes once and builds its string form only when asked.
+     * The hash code is the same as the one of its string form
+     */
+    final class Key {
+
+        static final int KEY = 1;
+        static final int IDENT = 2;
+
+        /**
+         * Which of the {@link Entity#key()} and {@link Entity#ident()} are overridden
+         */
+        private static final ClassValue<Integer> overrides = new ClassValue<Integer>() {
+            @Override
+            protected Integer computeValue(Class<?> type) {
+                try {
+                    return (type.getMethod("key").getDeclaringClass() == Entity.class ? 0 : KEY)
+                            | (type.getMethod("ident").getDeclaringClass() == Entity.class ? 0 : IDENT);
+                } catch (NoSuchMethodException e) {
+                    return 0;
+                }
+            }
+        };
+
+        /**
+         * Null if the key is a whole string given by an overridden {@link Entity#key()}
+         */
+        private final String type;
+        private final String id;
+        private final int hash;
+        private String string;
+
+        public Key(String type, String id) {
+            this.type = type;
+            this.id = id;
+            // the same as the hash code of type#id
+            int h = 31 * type.hashCode() + '#';
+            for (int i = 0; i < id.length(); i++) {
+                h = 31 * h + id.charAt(i);
+            }
+            this.hash = h;
+        }
+
+        private Key(String key) {
+            this.type = null;
+            this.id = key;
+            this.hash = key.hashCode();
+            this.string = key;
+        }
+
+        /**
+         * Check if the given method of the given type of {@link Entity} is overridden
+         *
+         * @param method {@link #KEY} or {@link #IDENT}
+         */
+        static boolean overridden(Class<?> type, int method) {
+            return (overrides.get(type) & method) != 0;
+        }
+
+        /**
+         * Get the {@link Key} of the given string, which is {@link #parse(String) parsed} if
+         * it has the separator, otherwise it is kept as a whole
+         */
+        public static Key of(String key) {
+            return key.indexOf('#') < 0 ? new Key(key) : parse(key);
+        }
+
+        /**
+         * Parse the given string form of a {@link Key}
+         *
+         * @see Entity#key()
+         */
+        public static Key parse(String key) {
+            // the class name never contains the #
+            int i = key.indexOf('#');
+            if (i < 0)
+                throw new IllegalArgumentException("Not an entity key [ ".concat(key).concat(" ]"));
+            return new Key(key.substring(0, i), key.substring(i + 1));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return hash == key.hash && id.equals(key.id) && Objects.equals(type, key.type);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            if (string == null) string = type + "#" + id;
+            return string;
+        }
+    }
 }
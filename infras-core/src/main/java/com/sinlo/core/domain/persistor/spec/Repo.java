@@ -2,6 +2,8 @@ package com.sinlo.core.domain.persistor.spec;
 
 import com.sinlo.core.common.util.Genericia;
 
+import java.util.Set;
+
 /**
  * Repo the infrastructure repository
  *
@@ -13,6 +15,17 @@ public interface Repo<T extends Entity> extends Genericia.Aware<T> {
 
     void update(T t);
 
+    /**
+     * Update only the given properties of the given entity, which are the ones changed
+     * since it was {@link com.sinlo.core.domain.persistor.Persistor#load(Entity) loaded}.
+     * It falls back to {@link #update(Entity)} the whole entity by default
+     *
+     * @param dirty the names of the changed properties, never empty
+     */
+    default void update(T t, Set<String> dirty) {
+        update(t);
+    }
+
     void delete(T t);
 
 }
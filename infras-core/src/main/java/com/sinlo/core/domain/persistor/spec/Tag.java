@@ -1,5 +1,7 @@
 package com.sinlo.core.domain.persistor.spec;
 
+import java.util.Set;
+
 /**
  * Tag the tagged tag
  *
@@ -8,10 +10,22 @@ package com.sinlo.core.domain.persistor.spec;
 public class Tag<T extends Entity> {
     public final Channel chan;
     public final T entity;
+    /**
+     * The names of the properties changed since the entity was loaded, or null if it is
+     * not tracked
+     *
+     * @see com.sinlo.core.domain.persistor.Persistor#load(Entity)
+     */
+    public final Set<String> dirty;
 
     public Tag(Channel chan, T entity) {
+        this(chan, entity, null);
+    }
+
+    public Tag(Channel chan, T entity, Set<String> dirty) {
         this.chan = chan;
         this.entity = entity;
+        this.dirty = dirty;
     }
 
     public class Ex extends Tag<T> {
@@ -19,7 +33,7 @@ public class Tag<T extends Entity> {
         public final Exception ex;
 
         public Ex(Exception ex) {
-            super(Tag.this.chan, Tag.this.entity);
+            super(Tag.this.chan, Tag.this.entity, Tag.this.dirty);
             this.ex = ex;
         }
     }
@@ -28,7 +42,28 @@ public class Tag<T extends Entity> {
      * Tagging channel
      */
     public enum Channel {
-        CREATE, UPDATE, DELETE
+        CREATE, UPDATE, DELETE;
+
+        /**
+         * The net channel of being tagged as this and then as the given one
+         *
+         * @return null if they cancel each other out
+         */
+        public Channel then(Channel next) {
+            switch (this) {
+                case CREATE:
+                    // nothing exists before the creation
+                    return next == DELETE ? null : CREATE;
+                case UPDATE:
+                    // it exists already
+                    return next == DELETE ? DELETE : UPDATE;
+                case DELETE:
+                    // created again after being deleted
+                    return next == CREATE ? UPDATE : DELETE;
+                default:
+                    return next;
+            }
+        }
     }
 
     /**
@@ -0,0 +1,218 @@
+package com.sinlo.core.http;
+
+import com.sinlo.core.common.wraparound.Chan;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Fetch many {@link Fetcha}s with at most {@link #parallelism(int)} of them in flight at
+ * the same time, all within an optional {@link #deadline(long)}. A failed {@link Fetcha}
+ * never fails the whole batch, it is reported as a failed {@link Outcome} instead
+ *
+ * @author sinlo
+ */
+public class Batch<T> {
+
+    public static final int DEFAULT_PARALLELISM = 16;
+
+    private final List<Fetcha<? extends T>> fetchas;
+    private int parallelism = DEFAULT_PARALLELISM;
+    private long deadline;
+
+    Batch(Collection<? extends Fetcha<? extends T>> fetchas) {
+        this.fetchas = new ArrayList<>(Objects.requireNonNull(fetchas));
+    }
+
+    /**
+     * The max number of {@link Fetcha}s in flight at the same time
+     */
+    public Batch<T> parallelism(int parallelism) {
+        if (parallelism <= 0)
+            throw new IllegalArgumentException("The parallelism should be positive");
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * The max millis the whole batch may take, those not yet done by then are reported as
+     * failed by a {@link TimeoutException} and those not yet started are never started.
+     * Non-positive means no deadline
+     */
+    public Batch<T> deadline(long millis) {
+        this.deadline = millis;
+        return this;
+    }
+
+    /**
+     * Fetch all and complete with the {@link Outcome}s in the order of submission
+     */
+    public CompletableFuture<List<Outcome<T>>> ordered() {
+        Run run = new Run(null);
+        return run.start().thenApply(v -> {
+            List<Outcome<T>> outcomes = new ArrayList<>(fetchas.size());
+            for (int i = 0; i < fetchas.size(); i++) {
+                outcomes.add(run.outcomes.get(i));
+            }
+            return outcomes;
+        });
+    }
+
+    /**
+     * Fetch all and hand each {@link Outcome} to the given {@code consumer} as soon as it
+     * completes, the {@code consumer} is never called concurrently
+     *
+     * @return the future completed after all the {@link Outcome}s have been consumed
+     */
+    public CompletableFuture<Void> completed(Consumer<Outcome<T>> consumer) {
+        return new Run(Objects.requireNonNull(consumer)).start();
+    }
+
+    /**
+     * One execution of the batch
+     */
+    private class Run {
+
+        private final Consumer<Outcome<T>> consumer;
+        private final int size = fetchas.size();
+        private final AtomicReferenceArray<Outcome<T>> outcomes = new AtomicReferenceArray<>(size);
+        private final AtomicReferenceArray<CompletableFuture<? extends T>> flying = new AtomicReferenceArray<>(size);
+        private final AtomicInteger remaining = new AtomicInteger(size);
+        private final AtomicInteger inflight = new AtomicInteger();
+        private final AtomicInteger wip = new AtomicInteger();
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private volatile boolean expired;
+        private int next;
+
+        private Run(Consumer<Outcome<T>> consumer) {
+            this.consumer = consumer;
+        }
+
+        private CompletableFuture<Void> start() {
+            if (size == 0) {
+                done.complete(null);
+                return done;
+            }
+            if (deadline > 0) {
+                ScheduledFuture<?> timer = Chan.EX.schedule(this::expire, deadline, TimeUnit.MILLISECONDS);
+                done.whenComplete((v, e) -> timer.cancel(false));
+            }
+            pump();
+            return done;
+        }
+
+        /**
+         * Start as many as allowed, the {@link #wip} makes sure only one thread is pumping
+         * and no recursion happens when a {@link Fetcha} completes immediately
+         */
+        private void pump() {
+            if (wip.getAndIncrement() != 0) return;
+            do {
+                while (!expired && next < size && inflight.get() < parallelism) {
+                    inflight.incrementAndGet();
+                    launch(next++);
+                }
+            } while (wip.decrementAndGet() != 0);
+        }
+
+        private void launch(int i) {
+            CompletableFuture<? extends T> future;
+            try {
+                future = fetchas.get(i).fetch();
+            } catch (Exception e) {
+                future = new CompletableFuture<>();
+                future.completeExceptionally(e);
+            }
+            flying.set(i, future);
+            future.whenComplete((t, e) -> {
+                settle(i, t, e);
+                inflight.decrementAndGet();
+                pump();
+            });
+        }
+
+        private void expire() {
+            expired = true;
+            TimeoutException timeout = new TimeoutException(
+                    String.format("The batch is not done within %s ms", deadline));
+            for (int i = 0; i < size; i++) {
+                if (settle(i, null, timeout)) {
+                    CompletableFuture<? extends T> future = flying.get(i);
+                    if (future != null) future.cancel(false);
+                }
+            }
+        }
+
+        /**
+         * @return true if the given one is settled by this call
+         */
+        private boolean settle(int i, T value, Throwable error) {
+            if (error instanceof CompletionException && error.getCause() != null)
+                error = error.getCause();
+            Outcome<T> outcome = new Outcome<>(i, fetchas.get(i), value, error);
+            if (!outcomes.compareAndSet(i, null, outcome)) return false;
+            try {
+                if (consumer != null) {
+                    synchronized (this) {
+                        consumer.accept(outcome);
+                    }
+                }
+            } catch (Throwable e) {
+                done.completeExceptionally(e);
+            }
+            if (remaining.decrementAndGet() == 0) done.complete(null);
+            return true;
+        }
+    }
+
+    /**
+     * The outcome of one {@link Fetcha} in the batch
+     */
+    public static class Outcome<T> {
+
+        /**
+         * The index in the order of submission
+         */
+        public final int index;
+        public final Fetcha<? extends T> fetcha;
+        private final T value;
+        private final Throwable error;
+
+        private Outcome(int index, Fetcha<? extends T> fetcha, T value, Throwable error) {
+            this.index = index;
+            this.fetcha = fetcha;
+            this.value = value;
+            this.error = error;
+        }
+
+        public boolean ok() {
+            return error == null;
+        }
+
+        /**
+         * The fetched value, null if failed
+         */
+        public T value() {
+            return value;
+        }
+
+        /**
+         * The cause of the failure, null if succeeded
+         */
+        public Throwable error() {
+            return error;
+        }
+
+        /**
+         * Get the fetched value or throw the cause of the failure
+         */
+        public T get() {
+            if (error == null) return value;
+            throw error instanceof RuntimeException
+                    ? (RuntimeException) error : new RuntimeException(error);
+        }
+    }
+}
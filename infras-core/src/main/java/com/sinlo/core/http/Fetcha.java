@@ -2,7 +2,13 @@ package com.sinlo.core.http;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.sinlo.core.common.util.*;
+import com.sinlo.core.common.wraparound.Chan;
 import com.sinlo.core.common.wraparound.Ordered;
+import com.sinlo.core.http.cache.Cache;
+import com.sinlo.core.http.cache.Stored;
+import com.sinlo.core.http.engine.Engine;
+import com.sinlo.core.http.metric.Listener;
+import com.sinlo.core.http.metric.Probe;
 import com.sinlo.core.http.spec.*;
 import com.sinlo.core.http.util.CredulousTrustManager;
 import com.sinlo.sponte.util.Pool;
@@ -11,8 +17,11 @@ import javax.net.ssl.HttpsURLConnection;
 import java.io.*;
 import java.net.*;
 import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
 import java.util.function.Function;
@@ -36,6 +45,7 @@ public class Fetcha<T> {
     private boolean followRedirects = true;
     private boolean credulous;
     private Consumer<OutputStream> bodyWriter;
+    private ContentAwareBodyWriter gzipped;
     private Timeout timeout;
 
     private Fetcha(URL url, Method method, Course<T> course, CookieManager cookieManager) {
@@ -91,6 +101,21 @@ public class Fetcha<T> {
         return from(url, Method.DELETE);
     }
 
+    /**
+     * Fetch the given {@link Fetcha}s as a {@link Batch}
+     */
+    public static <T> Batch<T> batch(Collection<? extends Fetcha<? extends T>> fetchas) {
+        return new Batch<>(fetchas);
+    }
+
+    /**
+     * @see #batch(Collection)
+     */
+    @SafeVarargs
+    public static <T> Batch<T> batch(Fetcha<? extends T>... fetchas) {
+        return new Batch<>(Arrays.asList(fetchas));
+    }
+
     /**
      * Set a header
      */
@@ -149,6 +174,7 @@ public class Fetcha<T> {
      */
     public Fetcha<T> body(Consumer<OutputStream> bodyWriter) {
         this.bodyWriter = bodyWriter;
+        this.gzipped = null;
         return this;
     }
 
@@ -157,6 +183,7 @@ public class Fetcha<T> {
      */
     public Fetcha<T> body(byte[] bytes) {
         this.bodyWriter = new ContentAwareBodyWriter(bytes, Charset.defaultCharset());
+        this.gzipped = null;
         return this;
     }
 
@@ -217,6 +244,24 @@ public class Fetcha<T> {
         return this.json(Jason.stringify(jn));
     }
 
+    /**
+     * Set the {@link #bodyWriter} to write the given {@link Object} encoded in the given
+     * {@link Jason.Mode}, and the body type accordingly
+     *
+     * @see Jason#serialize(Object, Jason.Mode)
+     */
+    public Fetcha<T> encode(Object object, Jason.Mode mode) {
+        return this.type(BodyType.of(mode)).body(Jason.serialize(object, mode));
+    }
+
+    /**
+     * Set the {@code Accept} header to negotiate the given {@link Jason.Mode modes}
+     */
+    public Fetcha<T> accept(Jason.Mode... modes) {
+        return this.header("Accept", Arrays.stream(modes)
+                .map(m -> m.contentType).toArray(String[]::new));
+    }
+
     /**
      * Append query string converted from the given parameter map
      */
@@ -264,67 +309,201 @@ public class Fetcha<T> {
     }
 
     /**
-     * Do the fetch
+     * Do the fetch. If the {@link Course} is {@link Course#coalesce() coalescing} and the
+     * {@link #method} is idempotent, an identical fetch already in flight is shared instead
+     * of building another one
      */
     public CompletableFuture<T> fetch() {
-        return this.build().thenApply(course.transformer);
+        if (!course.coalescing || !method.isIdempotent()) {
+            return this.build().thenApply(course.transformer);
+        }
+        Flight flight = new Flight(this);
+        CompletableFuture<T> mine = new CompletableFuture<>();
+        CompletableFuture<T> shared = course.flights.get(flight, () -> mine);
+        if (shared == mine) {
+            CompletableFuture<Response> built;
+            try {
+                built = this.build();
+            } catch (Throwable e) {
+                // failed right away, land so that no later fetch waits on it forever
+                course.flights.on(Pool.Key.present(flight), (k, f) -> f == mine ? null : f);
+                mine.completeExceptionally(e);
+                throw e;
+            }
+            built.thenApply(course.transformer).whenComplete((t, e) -> {
+                // land before completing so that later fetches make a new flight
+                course.flights.on(Pool.Key.present(flight), (k, f) -> f == mine ? null : f);
+                if (e != null) mine.completeExceptionally(e);
+                else mine.complete(t);
+            });
+        }
+        // a dependent future so that no caller could complete the shared one
+        return shared.thenApply(Function.identity());
     }
 
     /**
-     * Build the {@link HttpURLConnection} and connect
+     * Build the {@link HttpURLConnection} and execute it with the {@link Engine} of the
+     * {@link Course}, retrying by the {@link Retry} policy of the {@link Course} and
+     * guarded by its {@link Breaker} if any, and listened by its {@link Listener} if any
      *
      * @return {@link Response}
      */
     public CompletableFuture<Response> build() {
         CompletableFuture<Response> future = new CompletableFuture<>();
-        HttpURLConnection prepared;
+        final Listener listener = course.listener;
+        final String host = url.getAuthority();
+        if (listener != null) {
+            listener.started(host);
+            future.whenComplete((r, e) -> listener.finished(host,
+                    e == null ? Funny.nvl(Try.tolerate(r.connection()::getResponseCode), 0) : 0, e));
+        }
         try {
-            prepared = precept(Stage.OPEN, (HttpURLConnection)
-                    (course.proxy == null ? url.openConnection() : url.openConnection(course.proxy)));
-            prepared.setRequestMethod(method.toString());
-            prepared.setInstanceFollowRedirects(followRedirects);
-            // set timeout if any
-            if (timeout != null) timeout.set(prepared);
-            headers.forEach(prepared::setRequestProperty);
-            // take the cookies
-            carryCookies(prepared);
-            if (credulous && prepared instanceof HttpsURLConnection) {
-                CredulousTrustManager.trust((HttpsURLConnection) prepared);
+            attempt(1, future);
+        } catch (Throwable e) {
+            // the future is never to be completed
+            if (listener != null) listener.finished(host, 0, e);
+            throw e;
+        }
+        return future;
+    }
+
+    /**
+     * Make the given attempt, which starts from 1, and complete the given {@code future}
+     * when no more retry is needed
+     */
+    private void attempt(int attempt, CompletableFuture<Response> future) {
+        final String host = url.getAuthority();
+        // look up the cache if any
+        final String key = cacheKey();
+        Stored stored = key == null ? null : course.cache.get(key);
+        if (stored != null && !stored.matches(headers)) stored = null;
+        final Stored cached = stored;
+        final boolean hit = cached != null && cached.fresh() && !directs("no-cache");
+        final Probe probe = hit ? Probe.NONE : Probe.of(course.listener, host);
+        CompletableFuture<HttpURLConnection> executed;
+        if (hit) {
+            // a fresh hit needs no connection at all
+            executed = CompletableFuture.completedFuture(cached.connection(url));
+        } else {
+            HttpURLConnection prepared;
+            try {
+                prepared = precept(Stage.OPEN, course.engine.open(url, course.proxy));
+                prepared.setRequestMethod(method.toString());
+                prepared.setInstanceFollowRedirects(followRedirects);
+                // set timeout if any
+                if (timeout != null) timeout.set(prepared);
+                headers.forEach(prepared::setRequestProperty);
+                // negotiate the compressed response
+                if (course.decompress && header("Accept-Encoding") == null)
+                    prepared.setRequestProperty("Accept-Encoding", "gzip, deflate");
+                // revalidate the stale one
+                if (cached != null) cached.condition(prepared);
+                // take the cookies
+                carryCookies(prepared);
+                if (credulous && prepared instanceof HttpsURLConnection) {
+                    CredulousTrustManager.trust((HttpsURLConnection) prepared);
+                }
+                prepared = precept(Stage.ABOUT_TO_CONNECT, prepared);
+            } catch (Exception e) {
+                // the first attempt fails right in the calling thread
+                if (attempt == 1) Try.toss(e);
+                future.completeExceptionally(e);
+                return;
+            }
+            // consulted only when about to connect, as a probe let through must be followed
+            // by either a success or a failure of the host
+            if (course.breaker != null && !course.breaker.allows(host)) {
+                future.completeExceptionally(new Breaker.Open(host));
+                return;
+            }
+            // do the executing
+            try {
+                executed = course.engine.execute(prepared, compressed(prepared), probe);
+            } catch (Throwable e) {
+                // the probe if any is settled as well
+                if (course.breaker != null) course.breaker.fail(host);
+                throw e;
             }
-            prepared = precept(Stage.ABOUT_TO_CONNECT, prepared);
-        } catch (Exception e) {
-            return Try.toss(e);
         }
-        // do the connecting
-        final HttpURLConnection conn = prepared;
-        CompletableFuture.runAsync(() -> {
+        final boolean guarded = !hit && course.breaker != null;
+        executed.whenComplete((executedConn, e) -> {
+            if (e != null) {
+                failed(attempt, host, guarded, e, future);
+                return;
+            }
+            HttpURLConnection conn;
+            int code;
+            try {
+                conn = hit ? executedConn : cache(key, cached, executedConn);
+                code = guarded || course.retry.watchesStatuses()
+                        ? conn.getResponseCode() : 0;
+            } catch (Exception ex) {
+                failed(attempt, host, guarded, ex, future);
+                return;
+            }
+            if (guarded) {
+                if (Status.is5xxServerError(code) || course.retry.retries(code)) course.breaker.fail(host);
+                else course.breaker.succeed(host);
+            }
             try {
-                if (bodyWriter == null) {
-                    // connect without body
-                    conn.connect();
-                } else try {
-                    // try to connect and write the body
-                    conn.setDoOutput(true);
-                    conn.connect();
-                    try (OutputStream os = conn.getOutputStream()) {
-                        this.bodyWriter.accept(os);
-                        os.flush();
-                    }
-                } catch (IllegalStateException ignored) {
-                    // ignore the illegal state as the connecting and writing is allowed to happen
-                    // in preceptors
+                Next next = intercept(conn);
+                if (course.retry.allows(attempt) && (Next.RETRY.equals(next)
+                        || (course.retry.retries(method) && course.retry.retries(code)))) {
+                    String retryAfter = conn.getHeaderField("Retry-After");
+                    conn.disconnect();
+                    retry(attempt, retryAfter, future);
+                    return;
                 }
-                Response response = Next.RETRY.equals(intercept(conn))
-                        // retry by build another conn and wait for its response
-                        ? this.build().join()
-                        : Response.of(conn);
+                Response response = Response.of(conn, probe);
                 storeCookies(response);
                 future.complete(response);
+            } catch (Exception ex) {
+                future.completeExceptionally(ex);
+            }
+        });
+    }
+
+    /**
+     * The given attempt failed with the given exception
+     */
+    private void failed(int attempt, String host, boolean guarded, Throwable e,
+                        CompletableFuture<Response> future) {
+        if (guarded) course.breaker.fail(host);
+        if (course.retry.allows(attempt) && course.retry.retries(method) && course.retry.retries(e)) {
+            retry(attempt, null, future);
+        } else {
+            future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Get the body writer compressed if the {@link Course} asks so, and mark the given
+     * {@link HttpURLConnection} accordingly
+     */
+    private Consumer<OutputStream> compressed(HttpURLConnection conn) {
+        if (course.compress < 0 || !(bodyWriter instanceof ContentAwareBodyWriter)
+                || header("Content-Encoding") != null) {
+            return bodyWriter;
+        }
+        ContentAwareBodyWriter plain = (ContentAwareBodyWriter) bodyWriter;
+        if (plain.content().length <= course.compress) return bodyWriter;
+        if (gzipped == null) gzipped = plain.gzip();
+        conn.setRequestProperty("Content-Encoding", "gzip");
+        return gzipped;
+    }
+
+    /**
+     * Schedule the next attempt after the backoff delay without blocking any thread
+     */
+    private void retry(int attempt, String retryAfter, CompletableFuture<Response> future) {
+        if (course.listener != null) course.listener.retried(url.getAuthority(), attempt);
+        Chan.EX.schedule(() -> {
+            try {
+                attempt(attempt + 1, future);
             } catch (Exception e) {
                 future.completeExceptionally(e);
             }
-        });
-        return future;
+        }, course.retry.delay(attempt, retryAfter), TimeUnit.MILLISECONDS);
     }
 
     /**
@@ -370,6 +549,63 @@ public class Fetcha<T> {
         }
     }
 
+    /**
+     * The cache key, or null if the current request should not touch the cache
+     */
+    private String cacheKey() {
+        if (course.cache == null || method != Method.GET || directs("no-store")) return null;
+        return url.toString();
+    }
+
+    /**
+     * Get the request header of the given name case insensitively, as header names are
+     *
+     * @return the header value, or null if none
+     */
+    private String header(String name) {
+        String value = headers.get(name);
+        if (value != null) return value;
+        for (Map.Entry<String, String> e : headers.entrySet()) {
+            if (name.equalsIgnoreCase(e.getKey())) return e.getValue();
+        }
+        return null;
+    }
+
+    /**
+     * Check if the {@code Cache-Control} request header has the given directive
+     */
+    private boolean directs(String directive) {
+        for (Map.Entry<String, String> e : headers.entrySet()) {
+            if ("Cache-Control".equalsIgnoreCase(e.getKey())
+                    && e.getValue().toLowerCase().contains(directive)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Store the response of the given {@link HttpURLConnection} or renew the {@code cached}
+     * one by it, and return the {@link HttpURLConnection} to be responded
+     */
+    private HttpURLConnection cache(String key, Stored cached, HttpURLConnection conn) throws IOException {
+        if (course.cache == null) return conn;
+        if (key == null) {
+            // unsafe methods invalidate what is stored
+            if (method != Method.GET && method != Method.HEAD) course.cache.remove(url.toString());
+            return conn;
+        }
+        Stored stored = cached != null && conn.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED
+                ? cached.renew(conn)
+                : Stored.of(key, conn, headers, course.cache.maxBody());
+        if (stored == null) return conn;
+        // too large to be stored, yet what has been read is replayed
+        if (!stored.storable()) return stored.connection(url);
+        conn.disconnect();
+        course.cache.put(stored);
+        return stored.connection(url);
+    }
+
     private HttpURLConnection precept(Stage stage, HttpURLConnection conn) {
         for (Ordered<BiFunction<HttpURLConnection, Fetcha<T>, HttpURLConnection>> preceptor : course.forStage(stage)) {
             conn = preceptor.t.apply(conn, this);
@@ -486,6 +722,51 @@ public class Fetcha<T> {
         return body(baos.toByteArray()).getBody();
     }
 
+    /**
+     * The identity of a fetch, that is the method, url, headers and the digest of the body
+     */
+    private static final class Flight {
+
+        private final Method method;
+        private final String url;
+        private final Map<String, String> headers;
+        private final byte[] digest;
+        private final int hash;
+
+        private Flight(Fetcha<?> fetcha) {
+            this.method = fetcha.method;
+            this.url = fetcha.url.toString();
+            this.headers = new HashMap<>(fetcha.headers);
+            this.digest = fetcha.bodyWriter == null ? null : digest(fetcha.getBody().content());
+            this.hash = Objects.hash(method, url, headers) * 31 + Arrays.hashCode(digest);
+        }
+
+        private static byte[] digest(byte[] content) {
+            try {
+                return MessageDigest.getInstance("SHA-256").digest(content);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Flight)) return false;
+            Flight f = (Flight) o;
+            return hash == f.hash
+                    && method == f.method
+                    && url.equals(f.url)
+                    && headers.equals(f.headers)
+                    && Arrays.equals(digest, f.digest);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
     /**
      * The preceptor stages, all these stages should happen in the main thread, not yet in an asynchronous
      * thread yet
@@ -528,6 +809,15 @@ public class Fetcha<T> {
         private CookieManager cookieManager = NATIONAL_COOKIE_CENTER;
         private boolean credulous = false;
         private Proxy proxy;
+        private Engine engine = Engine.blocking();
+        private boolean coalescing;
+        private Cache cache;
+        private Retry retry = Retry.DEFAULT;
+        private Breaker breaker;
+        private boolean decompress = true;
+        private int compress = -1;
+        private Listener listener;
+        private final Pool<Flight, CompletableFuture<T>> flights = new Pool<>();
 
         public final Function<Response, T> transformer;
 
@@ -674,6 +964,87 @@ public class Fetcha<T> {
             return this;
         }
 
+        /**
+         * Use the given {@link Engine} to execute requests
+         *
+         * @see Engine#blocking()
+         * @see Engine#nio()
+         */
+        public Course<T> engine(Engine engine) {
+            this.engine = Objects.requireNonNull(engine);
+            return this;
+        }
+
+        /**
+         * Coalesce identical idempotent fetches in flight, so that concurrent callers share
+         * one upstream call and its result. The {@link #transformer} should therefore
+         * produce results that are safe to be shared, which a raw {@link Response} is not
+         *
+         * @see Fetcha#fetch()
+         */
+        public Course<T> coalesce() {
+            this.coalescing = true;
+            return this;
+        }
+
+        /**
+         * Cache the responses of GET requests in the given {@link Cache}, following the
+         * {@code Cache-Control} and {@code Expires} headers, and revalidating the stale ones
+         * by {@code ETag} and {@code Last-Modified}
+         *
+         * @see Cache#memory(long)
+         * @see Cache#disk(Filia)
+         * @see Cache#tiered(long, Filia)
+         */
+        public Course<T> cache(Cache cache) {
+            this.cache = cache;
+            return this;
+        }
+
+        /**
+         * Retry by the given {@link Retry} policy, which is {@link Retry#DEFAULT} if not
+         * specified
+         */
+        public Course<T> retry(Retry retry) {
+            this.retry = Objects.requireNonNull(retry);
+            return this;
+        }
+
+        /**
+         * Guard the hosts with the given {@link Breaker}
+         */
+        public Course<T> breaker(Breaker breaker) {
+            this.breaker = breaker;
+            return this;
+        }
+
+        /**
+         * Compress the request bodies of {@link ContentAwareBodyWriter} larger than the
+         * given bytes with gzip
+         */
+        public Course<T> compress(int threshold) {
+            this.compress = threshold;
+            return this;
+        }
+
+        /**
+         * Stop negotiating compressed responses by {@code Accept-Encoding}, which is done
+         * by default
+         */
+        public Course<T> uncompressed() {
+            this.decompress = false;
+            return this;
+        }
+
+        /**
+         * Listen to the fetches by the given {@link Listener}, e.g. a
+         * {@link com.sinlo.core.http.metric.Metrics}
+         */
+        public Course<T> listen(Listener listener) {
+            this.listener = listener;
+            return this;
+        }
+
         /**
          * Use a local cookie manager instead of the {@link #NATIONAL_COOKIE_CENTER}
          */
@@ -1,18 +1,26 @@
 package com.sinlo.core.http;
 
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.MappingIterator;
 import com.sinlo.core.common.util.*;
 import com.sinlo.core.common.wraparound.Lazy;
+import com.sinlo.core.http.metric.Probe;
+import com.sinlo.core.http.spec.BodyType;
 import com.sinlo.core.http.spec.Status;
 
-import java.io.IOException;
-import java.io.InputStream;
+import java.io.*;
 import java.net.HttpURLConnection;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 
 /**
  * The response entity
@@ -24,7 +32,9 @@ public class Response {
     private final Lazy<Map<String, List<String>>> headers;
     private final HttpURLConnection conn;
     private Charset charset = StandardCharsets.UTF_8;
+    private int buffer = 8192;
     private final Lazy<Status> status;
+    private final Probe probe;
 
     /**
      * When holds handlers for some specific http statuses. Any handler can abort the
@@ -37,21 +47,35 @@ public class Response {
      */
     private Function<Response, Boolean> otherwise;
 
-    private Response(HttpURLConnection conn) {
+    private Response(HttpURLConnection conn, Probe probe) {
         this.headers = new Lazy<>(conn::getHeaderFields);
         this.status = new Lazy<>(() -> Status.resolve(Try.panic(conn::getResponseCode)));
         this.conn = conn;
+        this.probe = probe;
     }
 
     /**
      * Create a response out of the given {@link HttpURLConnection}
      */
     public static Response of(HttpURLConnection conn) {
-        return new Response(Objects.requireNonNull(conn));
+        return of(conn, Probe.NONE);
     }
 
     /**
-     * Get the underlying {@link HttpURLConnection}
+     * Create a response out of the given {@link HttpURLConnection}, marking the body read
+     * on the given {@link Probe} when the body stream is closed
+     */
+    static Response of(HttpURLConnection conn, Probe probe) {
+        return new Response(Objects.requireNonNull(conn), probe);
+    }
+
+    /**
+     * Get the underlying {@link HttpURLConnection}. Note that its body is as it is on the
+     * wire, which is gzip or deflate encoded if so negotiated by the {@code Accept-Encoding}
+     * that {@link Fetcha} sends by default, while the body read via {@link #stream()} and
+     * the likes is decoded
+     *
+     * @see Fetcha.Course#uncompressed()
      */
     public HttpURLConnection connection() {
         return conn;
@@ -65,6 +89,17 @@ public class Response {
         return this;
     }
 
+    /**
+     * With the given buffer size of the body {@link InputStream}, which bounds the memory
+     * held by a streaming read no matter how large the body is
+     */
+    public Response buffer(int size) {
+        if (size <= 0)
+            throw new IllegalArgumentException("Buffer size must be positive");
+        this.buffer = size;
+        return this;
+    }
+
     /**
      * Get the {@link Status} of the current response
      */
@@ -76,7 +111,7 @@ public class Response {
      * Get the header identified by the given key
      */
     public String header(String key) {
-        List<String> header = headers().get(key);
+        List<String> header = values(key);
         if (Arria.isEmpty(header)) return "";
         return Arria.join(header, ",");
     }
@@ -85,11 +120,25 @@ public class Response {
      * Get a {@link Stream} containing all the header values identified by the given key
      */
     public Stream<String> headers(String key) {
-        List<String> header = headers().get(key);
+        List<String> header = values(key);
         if (Arria.isEmpty(header)) return Stream.empty();
         return header.stream();
     }
 
+    /**
+     * Get the values of the header identified by the given key case insensitively, as
+     * header names are
+     */
+    private List<String> values(String key) {
+        Map<String, List<String>> headers = headers();
+        List<String> values = headers.get(key);
+        if (values != null || key == null) return values;
+        for (Map.Entry<String, List<String>> e : headers.entrySet()) {
+            if (key.equalsIgnoreCase(e.getKey())) return e.getValue();
+        }
+        return null;
+    }
+
     /**
      * Get the original headers
      */
@@ -138,26 +187,142 @@ public class Response {
      * Get the content {@link InputStream} and map it to a {@link T}
      */
     public <T> Optional<T> map(Function<InputStream, T> mapper) {
+        return stream().map(in -> {
+            try (InputStream is = in) {
+                return mapper.apply(is);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    /**
+     * Get the content as a buffered {@link InputStream} without reading it, which should
+     * be closed by the caller and disconnects on closing. The gzip or deflate encoded
+     * content is decompressed on the fly. Empty if aborted by any of the status code
+     * handlers
+     */
+    public Optional<InputStream> stream() {
         Status sta = status.get();
         Function<Response, Boolean> h = whens.get(sta);
         // if the handler returns false
         if ((h != null && !Funny.nvl(h.apply(this), false))
                 // or "otherwise" returns false when it is not 2xx successful
-                || (otherwise != null && !sta.is2xxSuccessful()
+                || (otherwise != null && (sta == null || !sta.is2xxSuccessful())
                 && !Funny.nvl(otherwise.apply(this), false))) {
             // then abort
             return Optional.empty();
         }
 
-        try (InputStream is = this.conn.getInputStream()) {
-            return Optional.ofNullable(mapper.apply(is));
+        try {
+            return Optional.of(decode(new BufferedInputStream(conn.getInputStream(), buffer) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        probe.read();
+                        conn.disconnect();
+                    }
+                }
+            }));
         } catch (IOException e) {
-            throw new RuntimeException(e);
-        } finally {
             conn.disconnect();
+            throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Decompress the given content on the fly according to the {@code Content-Encoding}
+     */
+    private InputStream decode(BufferedInputStream in) throws IOException {
+        String encoding = header("Content-Encoding").trim().toLowerCase();
+        boolean gzip = encoding.equals("gzip") || encoding.equals("x-gzip");
+        if (!gzip && !encoding.equals("deflate")) return in;
+        // peek the first 2 bytes
+        in.mark(2);
+        int b0 = in.read(), b1 = in.read();
+        in.reset();
+        // an empty body has nothing to decompress
+        if (b0 < 0) return in;
+        if (gzip) return new GZIPInputStream(in, buffer);
+        // deflate is supposed to be zlib wrapped but raw deflate is also seen in the wild
+        final Inflater inflater = new Inflater(
+                (b0 & 0x0f) != 8 || b1 < 0 || ((b0 << 8) | b1) % 31 != 0);
+        return new InflaterInputStream(in, inflater, buffer) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    inflater.end();
+                }
+            }
+        };
+    }
+
+    /**
+     * Get the content as a {@link ReadableByteChannel}
+     *
+     * @see #stream()
+     */
+    public Optional<ReadableByteChannel> channel() {
+        return stream().map(Channels::newChannel);
+    }
+
+    /**
+     * Read the text content line by line through the given {@code fn}, only the
+     * current line is held in memory
+     */
+    public <T> Optional<T> lines(Function<Stream<String>, T> fn) {
+        return map(is -> fn.apply(
+                new BufferedReader(new InputStreamReader(is, charset)).lines()));
+    }
+
+    /**
+     * Parse the content into {@link T}s one by one and feed them to the given
+     * {@code consumer}, a root level array is iterated element by element
+     *
+     * @return the number of elements consumed
+     */
+    public <T> Optional<Long> each(Class<T> clz, Consumer<T> consumer) {
+        return each(Jason.codec(clz, mode(), null), consumer);
+    }
+
+    /**
+     * @see #each(Class, Consumer)
+     */
+    public <T> Optional<Long> each(TypeReference<T> typeReference, Consumer<T> consumer) {
+        return each(Jason.codec(typeReference, mode(), null), consumer);
+    }
+
+    private <T> Optional<Long> each(Jason.Codec<T> codec, Consumer<T> consumer) {
+        return map(is -> {
+            long count = 0;
+            try (MappingIterator<T> it = text(codec.mode())
+                    ? codec.values(new InputStreamReader(is, charset))
+                    : codec.values(is)) {
+                while (it.hasNextValue()) {
+                    consumer.accept(it.nextValue());
+                    count++;
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            return count;
+        });
+    }
+
+    /**
+     * Transfer the content into the given {@link Filia} target, overwriting the
+     * existing file
+     *
+     * @return the number of bytes transferred
+     */
+    public Optional<Long> to(Filia target) {
+        return map(is -> target.copy(is, true));
+    }
+
     /**
      * Get the text content
      */
@@ -169,14 +334,68 @@ public class Response {
      * Parse the text content to {@link T}
      */
     public <T> Optional<T> json(Class<T> clz) {
-        return text().map(t -> Jason.parse(t, clz));
+        return read(Jason.codec(clz));
     }
 
     /**
      * Parse the text content to {@link T} using {@link TypeReference}
      */
     public <T> Optional<T> json(TypeReference<T> typeReference) {
-        return text().map(t -> Jason.parse(t, typeReference));
+        return read(Jason.codec(typeReference));
+    }
+
+    private <T> Optional<T> read(Jason.Codec<T> codec) {
+        return map(is -> text(codec.mode())
+                ? codec.read(new InputStreamReader(is, charset))
+                : codec.read(is));
+    }
+
+    /**
+     * Get the raw content
+     */
+    public Optional<byte[]> bytes() {
+        return map(Filia::drain);
+    }
+
+    /**
+     * Decode the content to {@link T} in the {@link Jason.Mode} negotiated from the
+     * content type
+     */
+    public <T> Optional<T> decode(Class<T> clz) {
+        return decode(clz, mode());
+    }
+
+    /**
+     * Decode the content to {@link T} in the given {@link Jason.Mode}
+     */
+    public <T> Optional<T> decode(Class<T> clz, Jason.Mode mode) {
+        return read(Jason.codec(clz, mode, null));
+    }
+
+    /**
+     * @see #decode(Class)
+     */
+    public <T> Optional<T> decode(TypeReference<T> typeReference) {
+        return decode(typeReference, mode());
+    }
+
+    /**
+     * @see #decode(Class, Jason.Mode)
+     */
+    public <T> Optional<T> decode(TypeReference<T> typeReference, Jason.Mode mode) {
+        return read(Jason.codec(typeReference, mode, null));
+    }
+
+    private Jason.Mode mode() {
+        return Jason.Mode.of(header(BodyType.HEADER));
+    }
+
+    /**
+     * Binary modes are read from bytes, and so is json in utf-8 which jackson detects
+     * by itself, any other charset goes through a decoding {@link Reader}
+     */
+    private boolean text(Jason.Mode mode) {
+        return mode == Jason.Mode.JSON && !StandardCharsets.UTF_8.equals(charset);
     }
 
     /**
@@ -221,8 +440,31 @@ public class Response {
         private UnresolvableStatusException(Response response) {
             super(String.format(
                     "Got an unresolvable status code %s with message %s",
-                    response.status.get(),
-                    new String(Filia.drain(Try.tolerate(response.conn::getInputStream)))));
+                    response.status.get(), message(response)));
+        }
+
+        /**
+         * The decoded body of the response, which is of the error stream for the error
+         * statuses
+         */
+        private static String message(Response response) {
+            final HttpURLConnection conn = response.conn;
+            InputStream in;
+            try {
+                in = conn.getInputStream();
+            } catch (IOException e) {
+                in = conn.getErrorStream();
+            }
+            if (in == null) return "";
+            try {
+                return new String(Filia.drain(
+                        response.decode(new BufferedInputStream(in, response.buffer))),
+                        response.charset);
+            } catch (IOException e) {
+                return "";
+            } finally {
+                conn.disconnect();
+            }
         }
 
         public static boolean toss(Response response) {
@@ -0,0 +1,56 @@
+package com.sinlo.core.http.cache;
+
+import com.sinlo.core.common.util.Filia;
+
+/**
+ * The response cache of {@link com.sinlo.core.http.Fetcha}
+ *
+ * @author sinlo
+ */
+public interface Cache {
+
+    /**
+     * Get the {@link Stored} response of the given key, or null if none
+     */
+    Stored get(String key);
+
+    /**
+     * Store the given {@link Stored} response
+     */
+    void put(Stored stored);
+
+    /**
+     * Remove the response of the given key
+     */
+    void remove(String key);
+
+    /**
+     * The max size in bytes of a body to be stored, a larger one is streamed through
+     * without being stored
+     */
+    default int maxBody() {
+        return Stored.MAX_BODY;
+    }
+
+    /**
+     * A {@link MemoryCache} holding at most the given bytes of responses
+     */
+    static Cache memory(long maxBytes) {
+        return new MemoryCache(maxBytes);
+    }
+
+    /**
+     * A {@link DiskCache} in the given directory
+     */
+    static Cache disk(Filia dir) {
+        return new DiskCache(dir);
+    }
+
+    /**
+     * A {@link MemoryCache} of the given bytes in front of a {@link DiskCache} in the
+     * given directory
+     */
+    static Cache tiered(long maxBytes, Filia dir) {
+        return new TieredCache(memory(maxBytes), disk(dir));
+    }
+}
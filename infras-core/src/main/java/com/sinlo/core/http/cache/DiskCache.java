@@ -0,0 +1,84 @@
+package com.sinlo.core.http.cache;
+
+import com.sinlo.core.common.util.Filia;
+import com.sinlo.core.common.util.Try;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Objects;
+
+/**
+ * The {@link Cache} storing each response in a file of the given {@link Filia} directory,
+ * named by the digest of its key
+ *
+ * @author sinlo
+ */
+public class DiskCache implements Cache {
+
+    private final Filia dir;
+
+    public DiskCache(Filia dir) {
+        this.dir = Objects.requireNonNull(dir).ensure();
+    }
+
+    @Override
+    public Stored get(String key) {
+        Path path = path(key);
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(path)))) {
+            Stored stored = Stored.read(in, Math.min(Files.size(path), maxBody()));
+            // digest collision or stale format
+            return stored != null && key.equals(stored.key) ? stored : null;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            // a broken file is as good as none
+            Filia.rm(path);
+            return null;
+        }
+    }
+
+    @Override
+    public void put(Stored stored) {
+        Path path = path(stored.key);
+        Path temp = path.resolveSibling(path.getFileName() + "." + Thread.currentThread().getId());
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                stored.write(out);
+            }
+            // readers see either the old file or the new one
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // failing to cache never fails the fetch
+            Filia.rm(temp);
+            Try.tolerate(e);
+        }
+    }
+
+    @Override
+    public void remove(String key) {
+        Filia.rm(path(key));
+    }
+
+    private Path path(String key) {
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        StringBuilder name = new StringBuilder(64);
+        for (byte b : digest) {
+            name.append(Character.forDigit((b >> 4) & 0xf, 16))
+                    .append(Character.forDigit(b & 0xf, 16));
+        }
+        return dir.path().resolve(name.toString());
+    }
+}
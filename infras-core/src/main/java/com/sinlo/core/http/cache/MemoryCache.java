@@ -0,0 +1,59 @@
+package com.sinlo.core.http.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The least recently used in-memory {@link Cache} bounded by the total size of the
+ * stored responses
+ *
+ * @author sinlo
+ */
+public class MemoryCache implements Cache {
+
+    private final long maxBytes;
+    private final LinkedHashMap<String, Stored> store = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    public MemoryCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public synchronized Stored get(String key) {
+        return store.get(key);
+    }
+
+    @Override
+    public synchronized void put(Stored stored) {
+        int size = stored.size();
+        // never let one response flush all the others
+        if (size > maxBytes / 2) {
+            remove(stored.key);
+            return;
+        }
+        Stored old = store.put(stored.key, stored);
+        if (old != null) bytes -= old.size();
+        bytes += size;
+        Iterator<Map.Entry<String, Stored>> it = store.entrySet().iterator();
+        while (bytes > maxBytes && it.hasNext()) {
+            bytes -= it.next().getValue().size();
+            it.remove();
+        }
+    }
+
+    @Override
+    public synchronized void remove(String key) {
+        Stored old = store.remove(key);
+        if (old != null) bytes -= old.size();
+    }
+
+    /**
+     * No larger than half of the {@link #maxBytes}, which is never put anyway
+     */
+    @Override
+    public int maxBody() {
+        return (int) Math.min(Stored.MAX_BODY, maxBytes / 2);
+    }
+}
@@ -0,0 +1,405 @@
+package com.sinlo.core.http.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+
+/**
+ * A stored response along with its freshness and validators, following the rules of a
+ * private cache in RFC 7234
+ *
+ * @author sinlo
+ */
+public class Stored {
+
+    private static final int VERSION = 1;
+
+    /**
+     * The default max size in bytes of a body to be stored
+     */
+    public static final int MAX_BODY = 8 << 20;
+
+    final String key;
+    final String statusLine;
+    final int code;
+    final String message;
+    final List<String> keys;
+    final List<String> values;
+    final Map<String, String> vary;
+    final byte[] body;
+    /**
+     * The rest of the body following the {@link #body} if it is too large to be stored
+     */
+    final InputStream rest;
+
+    /**
+     * When the response was generated, in epoch millis
+     */
+    private final long at;
+    /**
+     * How long the response stays fresh, in millis
+     */
+    private final long lifetime;
+
+    private Stored(String key, String statusLine, int code, String message,
+                   List<String> keys, List<String> values, Map<String, String> vary,
+                   byte[] body, InputStream rest, long at, long lifetime) {
+        this.key = key;
+        this.statusLine = statusLine;
+        this.code = code;
+        this.message = message;
+        this.keys = keys;
+        this.values = values;
+        this.vary = vary;
+        this.body = body;
+        this.rest = rest;
+        this.at = at;
+        this.lifetime = lifetime;
+    }
+
+    /**
+     * Store the response of the given {@link HttpURLConnection} if it is storable and its
+     * body is no larger than the {@link #MAX_BODY}
+     *
+     * @see #of(String, HttpURLConnection, Map, int)
+     */
+    public static Stored of(String key, HttpURLConnection conn, Map<String, String> request) throws IOException {
+        return of(key, conn, request, MAX_BODY);
+    }
+
+    /**
+     * Store the response of the given {@link HttpURLConnection} if it is storable, the body
+     * is read fully unless it is larger than the given {@code max}. A body known to be larger
+     * by its {@code Content-Length} is never read and null is returned, otherwise the read
+     * part is kept in a {@link Stored} that is not {@link #storable()}, which replays the
+     * read part followed by the rest of the body
+     *
+     * @param key     the cache key
+     * @param request the request headers
+     * @param max     the max size in bytes of the body to be stored
+     * @return the {@link Stored} or null if the response is not storable
+     */
+    public static Stored of(String key, HttpURLConnection conn, Map<String, String> request, int max) throws IOException {
+        int code = conn.getResponseCode();
+        if (code != HttpURLConnection.HTTP_OK && code != HttpURLConnection.HTTP_NOT_AUTHORITATIVE)
+            return null;
+        List<String> keys = new ArrayList<>();
+        List<String> values = new ArrayList<>();
+        headers(conn, keys, values);
+        Map<String, String> vary = vary(find(keys, values, "Vary"), request);
+        if (vary == null) return null;
+        long now = System.currentTimeMillis();
+        long lifetime = lifetime(keys, values, now);
+        // neither fresh nor able to be revalidated
+        if (lifetime < 0 || (lifetime == 0 && find(keys, values, "ETag") == null
+                && find(keys, values, "Last-Modified") == null)) {
+            return null;
+        }
+        if (length(keys, values) > max) return null;
+        String message = conn.getResponseMessage();
+        if (message == null) message = "";
+        String statusLine = conn.getHeaderField(0);
+        if (statusLine == null || !statusLine.startsWith("HTTP/"))
+            statusLine = String.format("HTTP/1.1 %s %s", code, message);
+        InputStream in = conn.getInputStream();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try {
+            byte[] buf = new byte[4096];
+            int len;
+            // one more byte than the max tells if there is more
+            while (body.size() <= max && (len = in.read(buf, 0,
+                    (int) Math.min(buf.length, max + 1L - body.size()))) != -1) {
+                body.write(buf, 0, len);
+            }
+        } catch (IOException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
+        InputStream rest = body.size() > max ? in : null;
+        if (rest == null) in.close();
+        return new Stored(key, statusLine, code, message, keys, values, vary,
+                body.toByteArray(), rest, now - age(keys, values), lifetime);
+    }
+
+    /**
+     * Check if it could be stored, which is not the case if its body is larger than the max
+     * given to {@link #of(String, HttpURLConnection, Map, int)}
+     */
+    public boolean storable() {
+        return rest == null;
+    }
+
+    /**
+     * Check if it is still fresh
+     */
+    public boolean fresh() {
+        return System.currentTimeMillis() - at < lifetime;
+    }
+
+    /**
+     * Check if it was selected by the same values of the headers listed in {@code Vary}
+     */
+    public boolean matches(Map<String, String> request) {
+        for (Map.Entry<String, String> e : vary.entrySet()) {
+            if (!e.getValue().equals(value(request, e.getKey()))) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Make the given request conditional by the validators
+     */
+    public void condition(HttpURLConnection conn) {
+        String etag = header("ETag");
+        if (etag != null) conn.setRequestProperty("If-None-Match", etag);
+        String lastModified = header("Last-Modified");
+        if (lastModified != null) conn.setRequestProperty("If-Modified-Since", lastModified);
+    }
+
+    /**
+     * Renew by the given 304 Not Modified response, whose headers override the stored ones
+     */
+    public Stored renew(HttpURLConnection notModified) {
+        List<String> keys = new ArrayList<>(this.keys);
+        List<String> values = new ArrayList<>(this.values);
+        List<String> nk = new ArrayList<>();
+        List<String> nv = new ArrayList<>();
+        headers(notModified, nk, nv);
+        for (int i = 0; i < nk.size(); i++) {
+            String k = nk.get(i);
+            if ("Content-Length".equalsIgnoreCase(k)) continue;
+            for (int j = keys.size() - 1; j >= 0; j--) {
+                if (k.equalsIgnoreCase(keys.get(j))) {
+                    keys.remove(j);
+                    values.remove(j);
+                }
+            }
+        }
+        for (int i = 0; i < nk.size(); i++) {
+            if ("Content-Length".equalsIgnoreCase(nk.get(i))) continue;
+            keys.add(nk.get(i));
+            values.add(nv.get(i));
+        }
+        long now = System.currentTimeMillis();
+        return new Stored(key, statusLine, code, message, keys, values, vary, body, rest,
+                now - age(keys, values), Math.max(0, lifetime(keys, values, now)));
+    }
+
+    /**
+     * Get an {@link HttpURLConnection} replaying the stored response of the given {@link URL}
+     */
+    public HttpURLConnection connection(URL url) {
+        return new StoredConnection(url, this);
+    }
+
+    /**
+     * Get the last value of the given header
+     */
+    public String header(String name) {
+        return find(keys, values, name);
+    }
+
+    /**
+     * Get the cache key
+     */
+    public String key() {
+        return key;
+    }
+
+    /**
+     * The approximate size in bytes
+     */
+    public int size() {
+        int size = body.length;
+        for (int i = 0; i < keys.size(); i++) {
+            size += keys.get(i).length() + values.get(i).length();
+        }
+        return size;
+    }
+
+    void write(DataOutputStream out) throws IOException {
+        out.writeInt(VERSION);
+        out.writeUTF(key);
+        out.writeUTF(statusLine);
+        out.writeInt(code);
+        out.writeUTF(message);
+        out.writeInt(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            out.writeUTF(keys.get(i));
+            out.writeUTF(values.get(i));
+        }
+        out.writeInt(vary.size());
+        for (Map.Entry<String, String> e : vary.entrySet()) {
+            out.writeUTF(e.getKey());
+            out.writeUTF(e.getValue());
+        }
+        out.writeLong(at);
+        out.writeLong(lifetime);
+        out.writeInt(body.length);
+        out.write(body);
+    }
+
+    /**
+     * @param max the max number of bytes that could be read, e.g. the size of the file
+     * @return the read {@link Stored} or null if it is of another version
+     * @throws IOException if any length read is beyond the given {@code max}
+     */
+    static Stored read(DataInputStream in, long max) throws IOException {
+        if (in.readInt() != VERSION) return null;
+        String key = in.readUTF();
+        String statusLine = in.readUTF();
+        int code = in.readInt();
+        String message = in.readUTF();
+        int n = length(in, max);
+        List<String> keys = new ArrayList<>(n);
+        List<String> values = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            keys.add(in.readUTF());
+            values.add(in.readUTF());
+        }
+        n = length(in, max);
+        Map<String, String> vary = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            vary.put(in.readUTF(), in.readUTF());
+        }
+        long at = in.readLong();
+        long lifetime = in.readLong();
+        byte[] body = new byte[length(in, max)];
+        in.readFully(body);
+        return new Stored(key, statusLine, code, message, keys, values, vary, body, null, at, lifetime);
+    }
+
+    /**
+     * Read a length which should be no larger than the given {@code max}
+     */
+    private static int length(DataInputStream in, long max) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > max)
+            throw new IOException(String.format("Invalid length [ %s ] beyond [ %s ]", length, max));
+        return length;
+    }
+
+    /**
+     * The {@code Content-Length}, or -1 if unknown
+     */
+    private static long length(List<String> keys, List<String> values) {
+        String length = find(keys, values, "Content-Length");
+        if (length == null) return -1;
+        try {
+            return Long.parseLong(length.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Collect the headers except the status line and the cookies, which should never be
+     * replayed
+     */
+    private static void headers(HttpURLConnection conn, List<String> keys, List<String> values) {
+        for (Map.Entry<String, List<String>> e : conn.getHeaderFields().entrySet()) {
+            String k = e.getKey();
+            if (k == null || "Set-Cookie".equalsIgnoreCase(k) || "Set-Cookie2".equalsIgnoreCase(k))
+                continue;
+            for (String v : e.getValue()) {
+                keys.add(k);
+                values.add(v);
+            }
+        }
+    }
+
+    /**
+     * The freshness lifetime in millis, negative if not storable at all
+     */
+    private static long lifetime(List<String> keys, List<String> values, long now) {
+        String cc = find(keys, values, "Cache-Control");
+        if (cc != null) {
+            for (String directive : cc.toLowerCase().split(",")) {
+                String d = directive.trim();
+                if (d.equals("no-store")) return -1;
+                if (d.equals("no-cache")) return 0;
+                if (d.startsWith("max-age=")) {
+                    try {
+                        return Long.parseLong(unquote(d.substring(8))) * 1000;
+                    } catch (NumberFormatException e) {
+                        return 0;
+                    }
+                }
+            }
+        }
+        long date = date(find(keys, values, "Date"), now);
+        String expires = find(keys, values, "Expires");
+        if (expires != null) {
+            return Math.max(0, date(expires, date) - date);
+        }
+        // the heuristic freshness, a tenth of the time since its last modification
+        String lastModified = find(keys, values, "Last-Modified");
+        if (lastModified != null) {
+            return Math.max(0, (date - date(lastModified, date)) / 10);
+        }
+        return 0;
+    }
+
+    private static long age(List<String> keys, List<String> values) {
+        String age = find(keys, values, "Age");
+        if (age == null) return 0;
+        try {
+            return Long.parseLong(age.trim()) * 1000;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * @return the selecting request header values, or null if it varies by everything
+     */
+    private static Map<String, String> vary(String vary, Map<String, String> request) {
+        if (vary == null) return Collections.emptyMap();
+        Map<String, String> selected = new HashMap<>();
+        for (String name : vary.split(",")) {
+            String n = name.trim();
+            if (n.isEmpty()) continue;
+            if (n.equals("*")) return null;
+            selected.put(n, value(request, n));
+        }
+        return selected;
+    }
+
+    private static String value(Map<String, String> request, String name) {
+        for (Map.Entry<String, String> e : request.entrySet()) {
+            if (name.equalsIgnoreCase(e.getKey())) return e.getValue();
+        }
+        return "";
+    }
+
+    private static String find(List<String> keys, List<String> values, String name) {
+        for (int i = keys.size() - 1; i >= 0; i--) {
+            if (name.equalsIgnoreCase(keys.get(i))) return values.get(i);
+        }
+        return null;
+    }
+
+    private static long date(String raw, long otherwise) {
+        if (raw == null) return otherwise;
+        try {
+            return ZonedDateTime.parse(raw.trim(), DateTimeFormatter.RFC_1123_DATE_TIME)
+                    .toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            // an invalid date, e.g. Expires: 0, is treated as the given otherwise
+            return otherwise;
+        }
+    }
+
+    private static String unquote(String s) {
+        return s.length() > 1 && s.startsWith("\"") && s.endsWith("\"")
+                ? s.substring(1, s.length() - 1) : s;
+    }
+}
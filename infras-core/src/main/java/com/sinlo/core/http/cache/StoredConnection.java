@@ -0,0 +1,99 @@
+package com.sinlo.core.http.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.*;
+
+/**
+ * The {@link HttpURLConnection} replaying a {@link Stored} response without any I/O, unless
+ * the {@link Stored} is not {@link Stored#storable()}, whose rest of the body is read from
+ * the original connection
+ *
+ * @author sinlo
+ */
+class StoredConnection extends HttpURLConnection {
+
+    private final Stored stored;
+    private Map<String, List<String>> fields;
+
+    StoredConnection(URL url, Stored stored) {
+        super(url);
+        this.stored = stored;
+        this.responseCode = stored.code;
+        this.responseMessage = stored.message;
+        this.connected = true;
+    }
+
+    @Override
+    public void connect() {
+        // always connected
+    }
+
+    @Override
+    public void disconnect() {
+        if (stored.rest == null) return;
+        try {
+            stored.rest.close();
+        } catch (IOException ignored) {
+            // nothing else to do
+        }
+    }
+
+    @Override
+    public boolean usingProxy() {
+        return false;
+    }
+
+    @Override
+    public int getResponseCode() {
+        return responseCode;
+    }
+
+    @Override
+    public String getResponseMessage() {
+        return responseMessage;
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        InputStream body = new ByteArrayInputStream(stored.body);
+        return stored.rest == null ? body : new SequenceInputStream(body, stored.rest);
+    }
+
+    @Override
+    public Map<String, List<String>> getHeaderFields() {
+        if (fields == null) {
+            Map<String, List<String>> m = new TreeMap<>(
+                    Comparator.nullsFirst(String.CASE_INSENSITIVE_ORDER));
+            m.put(null, Collections.singletonList(stored.statusLine));
+            for (int i = 0; i < stored.keys.size(); i++) {
+                m.computeIfAbsent(stored.keys.get(i), k -> new ArrayList<>(1))
+                        .add(stored.values.get(i));
+            }
+            m.replaceAll((k, v) -> Collections.unmodifiableList(v));
+            fields = Collections.unmodifiableMap(m);
+        }
+        return fields;
+    }
+
+    @Override
+    public String getHeaderField(String name) {
+        return name == null ? null : stored.header(name);
+    }
+
+    @Override
+    public String getHeaderFieldKey(int n) {
+        if (n <= 0 || n > stored.keys.size()) return null;
+        return stored.keys.get(n - 1);
+    }
+
+    @Override
+    public String getHeaderField(int n) {
+        if (n < 0 || n > stored.keys.size()) return null;
+        return n == 0 ? stored.statusLine : stored.values.get(n - 1);
+    }
+}
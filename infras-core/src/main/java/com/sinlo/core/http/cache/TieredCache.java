@@ -0,0 +1,46 @@
+package com.sinlo.core.http.cache;
+
+import java.util.Objects;
+
+/**
+ * The {@link Cache} looking up the {@code front} tier first and then the {@code back}
+ * one, promoting what is found in the latter to the former
+ *
+ * @author sinlo
+ */
+public class TieredCache implements Cache {
+
+    private final Cache front;
+    private final Cache back;
+
+    public TieredCache(Cache front, Cache back) {
+        this.front = Objects.requireNonNull(front);
+        this.back = Objects.requireNonNull(back);
+    }
+
+    @Override
+    public Stored get(String key) {
+        Stored stored = front.get(key);
+        if (stored == null && (stored = back.get(key)) != null) {
+            front.put(stored);
+        }
+        return stored;
+    }
+
+    @Override
+    public void put(Stored stored) {
+        front.put(stored);
+        back.put(stored);
+    }
+
+    @Override
+    public void remove(String key) {
+        front.remove(key);
+        back.remove(key);
+    }
+
+    @Override
+    public int maxBody() {
+        return Math.max(front.maxBody(), back.maxBody());
+    }
+}
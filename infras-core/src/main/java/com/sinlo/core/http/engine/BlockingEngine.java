@@ -0,0 +1,97 @@
+package com.sinlo.core.http.engine;
+
+import com.sinlo.core.http.metric.Probe;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.Proxy;
+import java.net.URL;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * The {@link Engine} doing the blocking {@link HttpURLConnection} I/O on an {@link Executor},
+ * which by default is a dedicated pool of daemon threads so that slow upstreams never
+ * starve the common {@link java.util.concurrent.ForkJoinPool}
+ *
+ * @author sinlo
+ */
+public class BlockingEngine implements Engine {
+
+    static final BlockingEngine SHARED = new BlockingEngine(Executors.newCachedThreadPool(
+            new NamedThreads("fetcha-blocking-")));
+
+    private final Executor executor;
+
+    public BlockingEngine(Executor executor) {
+        this.executor = Objects.requireNonNull(executor);
+    }
+
+    @Override
+    public HttpURLConnection open(URL url, Proxy proxy) throws IOException {
+        return (HttpURLConnection) (proxy == null
+                ? url.openConnection() : url.openConnection(proxy));
+    }
+
+    @Override
+    public CompletableFuture<HttpURLConnection> execute(HttpURLConnection conn, Consumer<OutputStream> bodyWriter, Probe probe) {
+        CompletableFuture<HttpURLConnection> future = new CompletableFuture<>();
+        executor.execute(() -> {
+            probe.dispatched();
+            try {
+                if (bodyWriter == null) {
+                    // connect without body
+                    conn.connect();
+                    probe.connected();
+                } else try {
+                    // try to connect and write the body
+                    conn.setDoOutput(true);
+                    conn.connect();
+                    probe.connected();
+                    try (OutputStream os = conn.getOutputStream()) {
+                        bodyWriter.accept(os);
+                        os.flush();
+                    }
+                } catch (IllegalStateException ignored) {
+                    // ignore the illegal state as the connecting and writing is allowed to happen
+                    // in preceptors
+                }
+                // the request is not sent until the response is asked for unless streaming
+                probe.written();
+                // wait for the response head here, not in whichever thread consumes the future
+                conn.getResponseCode();
+                probe.responded();
+                future.complete(conn);
+            } catch (Exception e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Creates daemon threads named by the given prefix and a sequence
+     */
+    static class NamedThreads implements ThreadFactory {
+
+        private final String prefix;
+        private final AtomicInteger seq = new AtomicInteger();
+
+        NamedThreads(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, prefix + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
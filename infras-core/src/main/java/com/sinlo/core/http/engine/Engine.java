@@ -0,0 +1,56 @@
+package com.sinlo.core.http.engine;
+
+import com.sinlo.core.http.metric.Probe;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.Proxy;
+import java.net.URL;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * The engine that opens and executes the underlying {@link HttpURLConnection}s of
+ * {@link com.sinlo.core.http.Fetcha}
+ *
+ * @author sinlo
+ */
+public interface Engine {
+
+    /**
+     * Open a not yet connected {@link HttpURLConnection} to the given {@link URL}
+     *
+     * @param proxy the proxy, null means no proxy
+     */
+    HttpURLConnection open(URL url, Proxy proxy) throws IOException;
+
+    /**
+     * Connect the given {@link HttpURLConnection} opened by {@link #open(URL, Proxy)},
+     * write the body through the {@code bodyWriter} if any, and complete once the
+     * response is ready to be read
+     */
+    default CompletableFuture<HttpURLConnection> execute(HttpURLConnection conn, Consumer<OutputStream> bodyWriter) {
+        return execute(conn, bodyWriter, Probe.NONE);
+    }
+
+    /**
+     * The same as {@link #execute(HttpURLConnection, Consumer)}, marking the phases it
+     * goes through on the given {@link Probe}
+     */
+    CompletableFuture<HttpURLConnection> execute(HttpURLConnection conn, Consumer<OutputStream> bodyWriter, Probe probe);
+
+    /**
+     * The shared {@link BlockingEngine}
+     */
+    static Engine blocking() {
+        return BlockingEngine.SHARED;
+    }
+
+    /**
+     * The shared {@link NioEngine}
+     */
+    static Engine nio() {
+        return NioEngine.shared();
+    }
+}
@@ -0,0 +1,143 @@
+package com.sinlo.core.http.engine;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.ProtocolException;
+import java.net.URL;
+import java.util.*;
+
+/**
+ * The {@link HttpURLConnection} driven by the {@link NioEngine}. It only records the
+ * request before being executed, and reads the body passed by the {@link NioEngine}
+ * afterwards, which blocks only if the body is larger than what is held in memory
+ *
+ * @author sinlo
+ */
+class NioConnection extends HttpURLConnection {
+
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    private ResponseParser parsed;
+    private Map<String, List<String>> fields;
+
+    NioConnection(URL url) {
+        super(url);
+    }
+
+    /**
+     * Accept the parsed response and mark as connected
+     */
+    void accept(URL url, String method, ResponseParser parsed) {
+        this.url = url;
+        this.method = method;
+        this.parsed = parsed;
+        this.responseCode = parsed.code;
+        this.responseMessage = parsed.message;
+        this.connected = true;
+    }
+
+    /**
+     * Get the written request body, or null if nothing has been written
+     */
+    byte[] written() {
+        return doOutput ? output.toByteArray() : null;
+    }
+
+    @Override
+    public void connect() {
+        // connected by the engine
+    }
+
+    @Override
+    public void disconnect() {
+        if (parsed != null && parsed.body != null) parsed.body.close();
+    }
+
+    @Override
+    public boolean usingProxy() {
+        return false;
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        if (!doOutput)
+            throw new ProtocolException("Cannot write output before setting doOutput to true");
+        if (connected)
+            throw new ProtocolException("Cannot write output after reading input");
+        return output;
+    }
+
+    @Override
+    public int getResponseCode() throws IOException {
+        ready();
+        return responseCode;
+    }
+
+    @Override
+    public String getResponseMessage() throws IOException {
+        ready();
+        return responseMessage;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        ready();
+        if (responseCode >= 400) {
+            if (responseCode == 404 || responseCode == 410)
+                throw new FileNotFoundException(url.toString());
+            throw new IOException(String.format(
+                    "Server returned HTTP response code: %s for URL: %s", responseCode, url));
+        }
+        return body();
+    }
+
+    @Override
+    public InputStream getErrorStream() {
+        if (parsed == null || responseCode < 400 || parsed.body == null) return null;
+        return body();
+    }
+
+    @Override
+    public Map<String, List<String>> getHeaderFields() {
+        if (parsed == null) return Collections.emptyMap();
+        if (fields == null) {
+            Map<String, List<String>> m = new TreeMap<>(
+                    Comparator.nullsFirst(String.CASE_INSENSITIVE_ORDER));
+            m.put(null, Collections.singletonList(parsed.statusLine));
+            for (int i = 0; i < parsed.keys.size(); i++) {
+                m.computeIfAbsent(parsed.keys.get(i), k -> new ArrayList<>(1))
+                        .add(parsed.values.get(i));
+            }
+            m.replaceAll((k, v) -> Collections.unmodifiableList(v));
+            fields = Collections.unmodifiableMap(m);
+        }
+        return fields;
+    }
+
+    @Override
+    public String getHeaderField(String name) {
+        return parsed == null || name == null ? null : parsed.header(name);
+    }
+
+    @Override
+    public String getHeaderFieldKey(int n) {
+        if (parsed == null || n <= 0 || n > parsed.keys.size()) return null;
+        return parsed.keys.get(n - 1);
+    }
+
+    @Override
+    public String getHeaderField(int n) {
+        if (parsed == null || n < 0 || n > parsed.keys.size()) return null;
+        return n == 0 ? parsed.statusLine : parsed.values.get(n - 1);
+    }
+
+    private InputStream body() {
+        ResponseParser.Sink body = parsed.body;
+        return body == null ? new ByteArrayInputStream(new byte[0]) : body;
+    }
+
+    private void ready() throws IOException {
+        if (parsed == null)
+            throw new IOException("The connection has not been executed yet");
+    }
+}
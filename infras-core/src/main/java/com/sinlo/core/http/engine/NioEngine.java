@@ -0,0 +1,474 @@
+package com.sinlo.core.http.engine;
+
+import com.sinlo.core.http.metric.Probe;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * The {@link Engine} doing plain http on non-blocking sockets multiplexed by a small pool
+ * of selector threads, no thread is parked while waiting for the upstream. The futures
+ * are completed on the given {@link Executor} once the whole response has arrived, which
+ * could then be read without blocking, or once {@link ResponseParser.Sink#LIMIT} bytes of
+ * the body have arrived, in which case the rest is streamed to the reader and the socket
+ * is read no faster than the reader drains it
+ * <br/>
+ * Https and proxied requests are handed to the {@code fallback} {@link Engine}. The host
+ * name is resolved on the given {@link Executor} as well
+ *
+ * @author sinlo
+ */
+public class NioEngine implements Engine, Closeable {
+
+    private static final int MAX_REDIRECTS = 20;
+
+    private final Loop[] loops;
+    private final AtomicInteger next = new AtomicInteger();
+    private final Executor executor;
+    private final Engine fallback;
+
+    /**
+     * @param selectors the number of selector threads
+     * @param executor  on which the futures are completed
+     * @param fallback  the {@link Engine} for requests that could not be done here
+     */
+    public NioEngine(int selectors, Executor executor, Engine fallback) {
+        if (selectors <= 0)
+            throw new IllegalArgumentException("There should be at least one selector");
+        this.executor = Objects.requireNonNull(executor);
+        this.fallback = Objects.requireNonNull(fallback);
+        this.loops = new Loop[selectors];
+        ThreadFactory threads = new BlockingEngine.NamedThreads("fetcha-nio-");
+        for (int i = 0; i < selectors; i++) {
+            threads.newThread(loops[i] = new Loop()).start();
+        }
+    }
+
+    /**
+     * The shared instance
+     */
+    static NioEngine shared() {
+        return Shared.INSTANCE;
+    }
+
+    @Override
+    public HttpURLConnection open(URL url, Proxy proxy) throws IOException {
+        if (!"http".equals(url.getProtocol())
+                || (proxy != null && proxy.type() != Proxy.Type.DIRECT)) {
+            return fallback.open(url, proxy);
+        }
+        return new NioConnection(url);
+    }
+
+    @Override
+    public CompletableFuture<HttpURLConnection> execute(HttpURLConnection conn, Consumer<OutputStream> bodyWriter, Probe probe) {
+        if (!(conn instanceof NioConnection)) {
+            return fallback.execute(conn, bodyWriter, probe);
+        }
+        NioConnection nc = (NioConnection) conn;
+        CompletableFuture<HttpURLConnection> future = new CompletableFuture<>();
+        try {
+            if (bodyWriter != null) {
+                nc.setDoOutput(true);
+                try (OutputStream os = nc.getOutputStream()) {
+                    bodyWriter.accept(os);
+                }
+            }
+            final Exchange x = new Exchange(nc, nc.getURL(), nc.getRequestMethod(),
+                    nc.written(), nc.getRequestProperties(), future, probe, 0);
+            // resolving the host name may block
+            executor.execute(() -> {
+                try {
+                    x.start();
+                } catch (Exception e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Stop all the selector threads, failing the in-flight requests
+     */
+    @Override
+    public void close() {
+        for (Loop loop : loops) {
+            loop.closed = true;
+            loop.selector.wakeup();
+        }
+    }
+
+    /**
+     * One request to one address, a redirect is followed by another {@link Exchange}
+     */
+    private class Exchange {
+
+        private final NioConnection conn;
+        private final URL url;
+        private final String method;
+        private final byte[] body;
+        private final Map<String, List<String>> props;
+        private final CompletableFuture<HttpURLConnection> future;
+        private final Probe probe;
+        private final int redirects;
+        private final ResponseParser parser;
+
+        private Loop loop;
+        private SocketChannel channel;
+        private SelectionKey key;
+        private ByteBuffer out;
+        private boolean connecting;
+        private long deadline;
+        // if the future has been handed to the executor, only touched by the loop
+        private boolean settled;
+
+        private Exchange(NioConnection conn, URL url, String method, byte[] body,
+                         Map<String, List<String>> props,
+                         CompletableFuture<HttpURLConnection> future, Probe probe, int redirects) {
+            this.conn = conn;
+            this.url = url;
+            this.method = method;
+            this.body = body;
+            this.props = props;
+            this.future = future;
+            this.probe = probe;
+            this.redirects = redirects;
+            this.parser = new ResponseParser("HEAD".equals(method));
+        }
+
+        private void start() throws IOException {
+            InetSocketAddress address = new InetSocketAddress(url.getHost(),
+                    url.getPort() < 0 ? url.getDefaultPort() : url.getPort());
+            if (address.isUnresolved())
+                throw new UnknownHostException(url.getHost());
+            out = ByteBuffer.wrap(request());
+            channel = SocketChannel.open();
+            try {
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                connecting = !channel.connect(address);
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+            loop = loops[(next.getAndIncrement() & Integer.MAX_VALUE) % loops.length];
+            loop.submit(this);
+        }
+
+        private byte[] request() {
+            StringBuilder sb = new StringBuilder(256);
+            String file = url.getFile();
+            sb.append(method).append(' ').append(file.isEmpty() ? "/" : file)
+                    .append(" HTTP/1.1\r\nHost: ").append(url.getHost());
+            if (url.getPort() >= 0 && url.getPort() != url.getDefaultPort())
+                sb.append(':').append(url.getPort());
+            sb.append("\r\n");
+            boolean agent = false, accept = false;
+            for (Map.Entry<String, List<String>> e : props.entrySet()) {
+                String k = e.getKey();
+                if (k == null || restricted(k)) continue;
+                agent |= "User-Agent".equalsIgnoreCase(k);
+                accept |= "Accept".equalsIgnoreCase(k);
+                for (String v : e.getValue()) {
+                    sb.append(k).append(": ").append(v).append("\r\n");
+                }
+            }
+            if (!agent)
+                sb.append("User-Agent: Java/").append(System.getProperty("java.version")).append("\r\n");
+            if (!accept)
+                sb.append("Accept: */*\r\n");
+            if (body != null || "POST".equals(method) || "PUT".equals(method))
+                sb.append("Content-Length: ").append(body == null ? 0 : body.length).append("\r\n");
+            sb.append("Connection: close\r\n\r\n");
+            byte[] head = sb.toString().getBytes(StandardCharsets.ISO_8859_1);
+            if (body == null || body.length == 0) return head;
+            byte[] all = new byte[head.length + body.length];
+            System.arraycopy(head, 0, all, 0, head.length);
+            System.arraycopy(body, 0, all, head.length, body.length);
+            return all;
+        }
+
+        /**
+         * Renew the {@link #deadline} by the timeout of the current phase
+         */
+        private void idle() {
+            int timeout = connecting ? conn.getConnectTimeout() : conn.getReadTimeout();
+            deadline = timeout > 0 ? now() + timeout : 0;
+        }
+
+        private void handle(SelectionKey key, ByteBuffer buf) throws IOException {
+            if (key.isConnectable()) {
+                if (!channel.finishConnect()) return;
+                connecting = false;
+                probe.connected();
+                key.interestOps(SelectionKey.OP_WRITE);
+            } else if (key.isWritable()) {
+                channel.write(out);
+                if (!out.hasRemaining()) {
+                    out = null;
+                    probe.written();
+                    key.interestOps(SelectionKey.OP_READ);
+                }
+            } else if (key.isReadable()) {
+                buf.clear();
+                int n = channel.read(buf);
+                if (n > 0) probe.responded();
+                if (n < 0 ? parser.eof() : parser.feed((ByteBuffer) buf.flip())) {
+                    close();
+                    probe.read();
+                    settle();
+                    return;
+                }
+                if (parser.body != null && parser.body.full()) {
+                    // wait for the reader to drain the body
+                    key.interestOps(0);
+                    deadline = 0;
+                    settle();
+                    return;
+                }
+            }
+            idle();
+        }
+
+        /**
+         * Hand the {@link #settle(boolean)} to the executor once
+         */
+        private void settle() {
+            if (settled) return;
+            settled = true;
+            final boolean done = parser.done();
+            executor.execute(() -> settle(done));
+        }
+
+        /**
+         * Resume reading after the reader has drained the body
+         */
+        private void resume() {
+            loop.post(() -> {
+                if (key.isValid()) {
+                    key.interestOps(SelectionKey.OP_READ);
+                    idle();
+                }
+            });
+        }
+
+        /**
+         * Follow the redirect if any or complete the {@link #future}
+         *
+         * @param done if the whole response has arrived
+         */
+        private void settle(boolean done) {
+            try {
+                URL target = redirect();
+                if (target == null) {
+                    if (!done) {
+                        parser.body.resume = this::resume;
+                        parser.body.abort = this::close;
+                    }
+                    conn.accept(url, method, parser);
+                    future.complete(conn);
+                    return;
+                }
+                // the rest of the body of the redirect is not needed
+                if (!done) close();
+                int code = parser.code;
+                // only 307 and 308 keep the method and body of a POST
+                boolean keep = code == 307 || code == 308
+                        || (code != 303 && !"POST".equals(method));
+                new Exchange(conn, target, keep ? method : "GET", keep ? body : null,
+                        props, future, probe, redirects + 1).start();
+            } catch (Exception e) {
+                future.completeExceptionally(e);
+            }
+        }
+
+        private URL redirect() throws MalformedURLException {
+            int code = parser.code;
+            if (!conn.getInstanceFollowRedirects() || redirects >= MAX_REDIRECTS
+                    || code < 300 || code > 308 || code == 304 || code == 305 || code == 306)
+                return null;
+            String location = parser.header("Location");
+            if (location == null) return null;
+            URL target = new URL(url, location);
+            // never cross the protocol just as the HttpURLConnection does
+            return url.getProtocol().equals(target.getProtocol()) ? target : null;
+        }
+
+        private void fail(Throwable e) {
+            close();
+            if (settled) {
+                // the reader of the body is told instead
+                if (parser.body != null) parser.body.fail(e instanceof IOException
+                        ? (IOException) e : new IOException(e));
+                return;
+            }
+            settled = true;
+            executor.execute(() -> future.completeExceptionally(e));
+        }
+
+        private void close() {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // nothing else to do
+            }
+        }
+    }
+
+    /**
+     * The selector thread
+     */
+    private class Loop implements Runnable {
+
+        private final Selector selector;
+        private final Queue<Exchange> pending = new ConcurrentLinkedQueue<>();
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final ByteBuffer buf = ByteBuffer.allocate(16 * 1024);
+        private volatile boolean closed;
+
+        private Loop() {
+            try {
+                this.selector = Selector.open();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        private void submit(Exchange x) {
+            pending.add(x);
+            selector.wakeup();
+            // in case of being closed in the meantime
+            if (closed && pending.remove(x))
+                x.fail(new IOException("The engine has been closed"));
+        }
+
+        /**
+         * Run the given task on the selector thread
+         */
+        private void post(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            long nearest = 0;
+            while (!closed) {
+                try {
+                    if (nearest == 0) selector.select();
+                    else selector.select(Math.max(1, nearest - now()));
+                } catch (IOException e) {
+                    break;
+                }
+                Exchange x;
+                while ((x = pending.poll()) != null) {
+                    register(x);
+                }
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    task.run();
+                }
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    if (!key.isValid()) continue;
+                    Exchange ex = (Exchange) key.attachment();
+                    try {
+                        ex.handle(key, buf);
+                    } catch (Exception e) {
+                        ex.fail(e);
+                    }
+                }
+                nearest = sweep();
+            }
+            shutdown();
+        }
+
+        private void register(Exchange x) {
+            try {
+                x.key = x.channel.register(selector, x.connecting
+                        ? SelectionKey.OP_CONNECT : SelectionKey.OP_WRITE, x);
+                x.probe.dispatched();
+                if (!x.connecting) x.probe.connected();
+                x.idle();
+            } catch (ClosedChannelException e) {
+                x.fail(e);
+            }
+        }
+
+        /**
+         * Fail the timed out exchanges
+         *
+         * @return the nearest deadline among the others, 0 if none
+         */
+        private long sweep() {
+            long now = now(), nearest = 0;
+            for (SelectionKey key : selector.keys()) {
+                if (!key.isValid()) continue;
+                Exchange x = (Exchange) key.attachment();
+                if (x.deadline == 0) continue;
+                if (x.deadline <= now) {
+                    x.fail(new SocketTimeoutException(
+                            x.connecting ? "connect timed out" : "Read timed out"));
+                } else if (nearest == 0 || x.deadline < nearest) {
+                    nearest = x.deadline;
+                }
+            }
+            return nearest;
+        }
+
+        private void shutdown() {
+            IOException closing = new IOException("The engine has been closed");
+            for (SelectionKey key : selector.keys()) {
+                ((Exchange) key.attachment()).fail(closing);
+            }
+            Exchange x;
+            while ((x = pending.poll()) != null) {
+                x.fail(closing);
+            }
+            try {
+                selector.close();
+            } catch (IOException ignored) {
+                // nothing else to do
+            }
+        }
+    }
+
+    private static boolean restricted(String header) {
+        return "Host".equalsIgnoreCase(header)
+                || "Content-Length".equalsIgnoreCase(header)
+                || "Connection".equalsIgnoreCase(header)
+                || "Transfer-Encoding".equalsIgnoreCase(header);
+    }
+
+    private static long now() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+    private static class Shared {
+        private static final NioEngine INSTANCE = new NioEngine(
+                Math.min(2, Runtime.getRuntime().availableProcessors()),
+                Executors.newCachedThreadPool(new BlockingEngine.NamedThreads("fetcha-nio-worker-")),
+                Engine.blocking());
+    }
+}
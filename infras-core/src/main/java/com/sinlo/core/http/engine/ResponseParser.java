@@ -0,0 +1,343 @@
+package com.sinlo.core.http.engine;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * The incremental HTTP/1.1 response parser fed with whatever bytes a non-blocking read
+ * yields. It understands fixed length, chunked and close delimited bodies. A line longer
+ * than {@link #MAX_LINE} or a head longer than {@link #MAX_HEAD} is refused, and the body
+ * is passed to the {@link Sink} as it arrives
+ *
+ * @author sinlo
+ */
+class ResponseParser {
+
+    private enum State {
+        STATUS, HEADERS, LENGTH, SIZE, DATA, DATA_END, TRAILER, UNTIL_EOF, DONE
+    }
+
+    /**
+     * The max length of a line
+     */
+    static final int MAX_LINE = 8 * 1024;
+
+    /**
+     * The max length of the response head, or of the trailers
+     */
+    static final int MAX_HEAD = 64 * 1024;
+
+    private final boolean head;
+
+    private State state = State.STATUS;
+    private final StringBuilder line = new StringBuilder(64);
+    private long remaining;
+    private int headed;
+
+    String statusLine;
+    int code;
+    String message;
+    final List<String> keys = new ArrayList<>();
+    final List<String> values = new ArrayList<>();
+    Sink body;
+
+    /**
+     * @param head if the request is a HEAD one, whose response has no body
+     */
+    ResponseParser(boolean head) {
+        this.head = head;
+    }
+
+    /**
+     * Feed the given bytes
+     *
+     * @return true if the response is complete
+     */
+    boolean feed(ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining() && state != State.DONE) {
+            switch (state) {
+                case LENGTH:
+                case DATA:
+                    int n = (int) Math.min(remaining, buf.remaining());
+                    copy(buf, n);
+                    if ((remaining -= n) == 0)
+                        state = state == State.LENGTH ? State.DONE : State.DATA_END;
+                    break;
+                case UNTIL_EOF:
+                    copy(buf, buf.remaining());
+                    break;
+                default:
+                    byte b = buf.get();
+                    if ((state == State.STATUS || state == State.HEADERS
+                            || state == State.TRAILER) && ++headed > MAX_HEAD)
+                        throw new IOException(String.format(
+                                "The response head exceeds %s bytes", MAX_HEAD));
+                    if (b == '\n') {
+                        int len = line.length();
+                        if (len > 0 && line.charAt(len - 1) == '\r') line.setLength(len - 1);
+                        String l = line.toString();
+                        line.setLength(0);
+                        line(l);
+                    } else if (line.length() < MAX_LINE) {
+                        line.append((char) (b & 0xff));
+                    } else {
+                        throw new IOException(String.format(
+                                "The response line exceeds %s bytes", MAX_LINE));
+                    }
+            }
+        }
+        return done();
+    }
+
+    /**
+     * Meet the end of the stream
+     *
+     * @return true if the response is complete
+     */
+    boolean eof() throws IOException {
+        if (state == State.UNTIL_EOF) state = State.DONE;
+        if (state != State.DONE)
+            throw new IOException("Premature end of the response");
+        return done();
+    }
+
+    /**
+     * @return true if the response is complete, in which case the {@link #body} is ended
+     */
+    boolean done() {
+        if (state != State.DONE) return false;
+        if (body != null) body.end();
+        return true;
+    }
+
+    /**
+     * Get the last value of the given header, case insensitively
+     */
+    String header(String key) {
+        for (int i = keys.size() - 1; i >= 0; i--) {
+            if (key.equalsIgnoreCase(keys.get(i))) return values.get(i);
+        }
+        return null;
+    }
+
+    private void line(String l) throws IOException {
+        switch (state) {
+            case STATUS:
+                // tolerate empty lines before the status line
+                if (l.isEmpty()) return;
+                status(l);
+                state = State.HEADERS;
+                break;
+            case HEADERS:
+                if (l.isEmpty()) headed();
+                else {
+                    int colon = l.indexOf(':');
+                    if (colon <= 0)
+                        throw new IOException(String.format("Malformed header [ %s ]", l));
+                    keys.add(l.substring(0, colon).trim());
+                    values.add(l.substring(colon + 1).trim());
+                }
+                break;
+            case SIZE:
+                int semi = l.indexOf(';');
+                try {
+                    remaining = Long.parseLong((semi < 0 ? l : l.substring(0, semi)).trim(), 16);
+                } catch (NumberFormatException e) {
+                    throw new IOException(String.format("Malformed chunk size [ %s ]", l));
+                }
+                if (remaining == 0) {
+                    headed = 0;
+                    state = State.TRAILER;
+                } else state = State.DATA;
+                break;
+            case DATA_END:
+                if (!l.isEmpty())
+                    throw new IOException("Malformed chunk ending");
+                state = State.SIZE;
+                break;
+            case TRAILER:
+                if (l.isEmpty()) state = State.DONE;
+                break;
+        }
+    }
+
+    private void status(String l) throws IOException {
+        // HTTP/1.1 200 OK
+        int sp = l.indexOf(' ');
+        if (!l.startsWith("HTTP/") || sp < 0 || l.length() < sp + 4)
+            throw new IOException(String.format("Malformed status line [ %s ]", l));
+        try {
+            code = Integer.parseInt(l.substring(sp + 1, sp + 4));
+        } catch (NumberFormatException e) {
+            throw new IOException(String.format("Malformed status line [ %s ]", l));
+        }
+        statusLine = l;
+        message = l.length() > sp + 5 ? l.substring(sp + 5) : "";
+    }
+
+    private void headed() throws IOException {
+        // skip interim responses
+        if (code >= 100 && code < 200 && code != 101) {
+            keys.clear();
+            values.clear();
+            headed = 0;
+            state = State.STATUS;
+            return;
+        }
+        if (head || code == 204 || code == 304 || code < 200) {
+            state = State.DONE;
+            return;
+        }
+        String te = header("Transfer-Encoding");
+        if (te != null && te.toLowerCase().contains("chunked")) {
+            body = new Sink();
+            state = State.SIZE;
+            return;
+        }
+        String cl = header("Content-Length");
+        if (cl != null) {
+            try {
+                remaining = Long.parseLong(cl.trim());
+            } catch (NumberFormatException e) {
+                throw new IOException(String.format("Malformed content length [ %s ]", cl));
+            }
+            body = new Sink();
+            state = remaining == 0 ? State.DONE : State.LENGTH;
+            return;
+        }
+        body = new Sink();
+        state = State.UNTIL_EOF;
+    }
+
+    /**
+     * The body passed from the selector thread to the reader. The selector thread should
+     * stop reading once it is {@link #full()}, and it is {@link #resume}d as soon as the
+     * reader has drained half of it
+     */
+    static class Sink extends InputStream {
+
+        /**
+         * The max number of bytes held
+         */
+        static final int LIMIT = 1 << 20;
+
+        private final Queue<byte[]> chunks = new ArrayDeque<>();
+        private byte[] current;
+        private int pos;
+        private int held;
+        private boolean paused;
+        private boolean ended;
+        private boolean closed;
+        private IOException failure;
+
+        /**
+         * Called once the reader has drained half of a paused sink
+         */
+        Runnable resume;
+
+        /**
+         * Called if the reader closes the sink before its end
+         */
+        Runnable abort;
+
+        synchronized void write(byte[] b, int off, int len) {
+            if (closed || len == 0) return;
+            byte[] chunk = new byte[len];
+            System.arraycopy(b, off, chunk, 0, len);
+            chunks.add(chunk);
+            held += len;
+            notifyAll();
+        }
+
+        /**
+         * Mark paused if {@link #LIMIT} bytes are held
+         *
+         * @return true if paused
+         */
+        synchronized boolean full() {
+            return paused = held >= LIMIT && !ended && !closed;
+        }
+
+        synchronized void end() {
+            ended = true;
+            notifyAll();
+        }
+
+        synchronized void fail(IOException e) {
+            if (ended) return;
+            failure = e;
+            notifyAll();
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            while (current == null) {
+                if (closed) throw new IOException("Stream closed");
+                if ((current = chunks.poll()) != null) {
+                    pos = 0;
+                    break;
+                }
+                if (failure != null) throw failure;
+                if (ended) return -1;
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+            }
+            int n = Math.min(len, current.length - pos);
+            System.arraycopy(current, pos, b, off, n);
+            if ((pos += n) == current.length) current = null;
+            held -= n;
+            if (paused && held <= LIMIT / 2) {
+                paused = false;
+                if (resume != null) resume.run();
+            }
+            return n;
+        }
+
+        @Override
+        public synchronized int available() {
+            return closed ? 0 : held;
+        }
+
+        @Override
+        public void close() {
+            Runnable a;
+            synchronized (this) {
+                if (closed) return;
+                closed = true;
+                chunks.clear();
+                current = null;
+                held = 0;
+                a = ended ? null : abort;
+            }
+            if (a != null) a.run();
+        }
+    }
+
+    private void copy(ByteBuffer buf, int n) {
+        if (buf.hasArray()) {
+            body.write(buf.array(), buf.arrayOffset() + buf.position(), n);
+            buf.position(buf.position() + n);
+        } else {
+            byte[] bytes = new byte[n];
+            buf.get(bytes);
+            body.write(bytes, 0, n);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.sinlo.core.http.metric;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of nanos in log-linear buckets, each power of 2 is split into
+ * {@link #SUB} linear buckets so that the relative error of the percentiles stays under
+ * 1 / {@link #SUB}
+ *
+ * @author sinlo
+ */
+public class Histogram {
+
+    private static final int SUB_BITS = 3;
+    private static final int SUB = 1 << SUB_BITS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray((64 - SUB_BITS + 1) * SUB);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Record the given nanos, the negative ones are taken as 0
+     */
+    public void record(long nanos) {
+        long v = Math.max(0, nanos);
+        buckets.incrementAndGet(index(v));
+        count.increment();
+        sum.add(v);
+        max.accumulate(v);
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    /**
+     * The mean in nanos
+     */
+    public double mean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * The max in nanos
+     */
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * The given percentile in nanos, which is the upper bound of the bucket holding it
+     *
+     * @param percentile from 0 to 100
+     */
+    public long percentile(double percentile) {
+        long n = count.sum();
+        if (n == 0) return 0;
+        long rank = (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * n);
+        long seen = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            seen += buckets.get(i);
+            if (seen >= Math.max(1, rank)) return Math.min(upper(i), max());
+        }
+        return max();
+    }
+
+    /**
+     * Clear all the records
+     */
+    public void reset() {
+        for (int i = 0; i < buckets.length(); i++) {
+            buckets.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%s mean=%.3fms p50=%.3fms p90=%.3fms p99=%.3fms max=%.3fms",
+                count(), mean() / 1e6, ms(percentile(50)), ms(percentile(90)),
+                ms(percentile(99)), ms(max()));
+    }
+
+    private static double ms(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * The values below {@link #SUB} have a bucket each, the others go to the linear
+     * bucket of their highest power of 2
+     */
+    private static int index(long v) {
+        if (v < SUB) return (int) v;
+        int exp = 63 - Long.numberOfLeadingZeros(v) - SUB_BITS;
+        return (exp + 1) * SUB + (int) ((v >>> exp) & (SUB - 1));
+    }
+
+    private static long upper(int index) {
+        if (index < SUB) return index;
+        int exp = index / SUB - 1;
+        long lower = ((long) (SUB + index % SUB)) << exp;
+        return lower + (1L << exp) - 1;
+    }
+}
@@ -0,0 +1,36 @@
+package com.sinlo.core.http.metric;
+
+/**
+ * Listens to the fetches of a {@link com.sinlo.core.http.Fetcha.Course}. The methods are
+ * called on whichever thread the fetch happens to be, and should return quickly
+ *
+ * @author sinlo
+ * @see Metrics the default in-memory implementation
+ */
+public interface Listener {
+
+    /**
+     * A fetch to the given host has started
+     */
+    default void started(String host) {
+    }
+
+    /**
+     * The given {@link Phase} of an attempt to the given host took the given nanos
+     */
+    default void timed(String host, Phase phase, long nanos) {
+    }
+
+    /**
+     * The given attempt to the given host is going to be retried
+     */
+    default void retried(String host, int attempt) {
+    }
+
+    /**
+     * A fetch to the given host has finished with the given status code, or failed by the
+     * given error in which case the code is 0
+     */
+    default void finished(String host, int code, Throwable error) {
+    }
+}
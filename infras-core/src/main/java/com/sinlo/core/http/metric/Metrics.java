@@ -0,0 +1,143 @@
+package com.sinlo.core.http.metric;
+
+import com.sinlo.core.http.spec.Status;
+import com.sinlo.sponte.util.Pool;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The default in-memory {@link Listener}, keeping a {@link Histogram} per {@link Phase}
+ * and the counters per host
+ *
+ * @author sinlo
+ */
+public class Metrics implements Listener {
+
+    private final Pool<String, Host> hosts = new Pool<>();
+    private final Map<Phase, Histogram> phases = new EnumMap<>(Phase.class);
+
+    public Metrics() {
+        for (Phase phase : Phase.values()) {
+            phases.put(phase, new Histogram());
+        }
+    }
+
+    @Override
+    public void started(String host) {
+        Host h = host(host);
+        h.requests.increment();
+        h.inflight.incrementAndGet();
+    }
+
+    @Override
+    public void timed(String host, Phase phase, long nanos) {
+        phases.get(phase).record(nanos);
+        host(host).phases.get(phase).record(nanos);
+    }
+
+    @Override
+    public void retried(String host, int attempt) {
+        host(host).retries.increment();
+    }
+
+    @Override
+    public void finished(String host, int code, Throwable error) {
+        Host h = host(host);
+        h.inflight.decrementAndGet();
+        if (error != null || Status.is5xxServerError(code)) h.errors.increment();
+    }
+
+    /**
+     * The {@link Histogram} of the given {@link Phase} across all hosts
+     */
+    public Histogram histogram(Phase phase) {
+        return phases.get(phase);
+    }
+
+    /**
+     * The {@link Host} of the given host
+     */
+    public Host host(String host) {
+        return hosts.get(host, Host::new);
+    }
+
+    /**
+     * All the {@link Host}s sorted by the host names
+     */
+    public Map<String, Host> hosts() {
+        Map<String, Host> all = new TreeMap<>();
+        for (Map.Entry<String, Host> e : hosts.entries()) {
+            all.put(e.getKey(), e.getValue());
+        }
+        return Collections.unmodifiableMap(all);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        phases.forEach((phase, h) -> sb.append(phase).append(": ").append(h).append('\n'));
+        hosts().forEach((name, h) -> sb.append(name).append(": ").append(h).append('\n'));
+        return sb.toString();
+    }
+
+    /**
+     * The metrics of one host
+     */
+    public static class Host {
+
+        private final LongAdder requests = new LongAdder();
+        private final AtomicLong inflight = new AtomicLong();
+        private final LongAdder retries = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final Map<Phase, Histogram> phases = new EnumMap<>(Phase.class);
+
+        private Host() {
+            for (Phase phase : Phase.values()) {
+                phases.put(phase, new Histogram());
+            }
+        }
+
+        /**
+         * The number of fetches started
+         */
+        public long requests() {
+            return requests.sum();
+        }
+
+        /**
+         * The number of fetches started but not yet finished
+         */
+        public long inflight() {
+            return inflight.get();
+        }
+
+        /**
+         * The number of retries
+         */
+        public long retries() {
+            return retries.sum();
+        }
+
+        /**
+         * The number of fetches failed by an error or finished with a 5xx status
+         */
+        public long errors() {
+            return errors.sum();
+        }
+
+        public Histogram histogram(Phase phase) {
+            return phases.get(phase);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("requests=%s inflight=%s retries=%s errors=%s ttfb[%s]",
+                    requests(), inflight(), retries(), errors(), phases.get(Phase.FIRST_BYTE));
+        }
+    }
+}
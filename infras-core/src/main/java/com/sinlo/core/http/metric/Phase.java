@@ -0,0 +1,32 @@
+package com.sinlo.core.http.metric;
+
+/**
+ * The timed phases of one attempt of a {@link com.sinlo.core.http.Fetcha}, each starting
+ * where the previous one ends
+ *
+ * @author sinlo
+ */
+public enum Phase {
+    /**
+     * Waiting for the engine to pick the request up, a long queue means the engine is
+     * starving rather than the upstream being slow
+     */
+    QUEUE,
+    /**
+     * Resolving the host name and connecting
+     */
+    CONNECT,
+    /**
+     * Writing the request head and body
+     */
+    WRITE,
+    /**
+     * Waiting for the response head after the request is written
+     */
+    FIRST_BYTE,
+    /**
+     * Reading the response body, reported when the body is fully received by the engine
+     * or when the body stream of the {@link com.sinlo.core.http.Response} is closed
+     */
+    READ,
+}
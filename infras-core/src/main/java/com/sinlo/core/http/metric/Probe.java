@@ -0,0 +1,85 @@
+package com.sinlo.core.http.metric;
+
+/**
+ * Marks the end of each {@link Phase} of one attempt and reports the elapsed time to the
+ * {@link Listener}. The engines mark what they can observe, a {@link Phase} never marked
+ * is never reported
+ *
+ * @author sinlo
+ */
+public class Probe {
+
+    /**
+     * The probe reporting nothing
+     */
+    public static final Probe NONE = new Probe(null, null);
+
+    private final Listener listener;
+    private final String host;
+    private long last;
+    private Phase reached;
+
+    private Probe(Listener listener, String host) {
+        this.listener = listener;
+        this.host = host;
+        this.last = listener == null ? 0 : System.nanoTime();
+    }
+
+    /**
+     * A probe of an attempt to the given host starting from now
+     */
+    public static Probe of(Listener listener, String host) {
+        return listener == null ? NONE : new Probe(listener, host);
+    }
+
+    /**
+     * The engine picked the request up
+     */
+    public void dispatched() {
+        mark(Phase.QUEUE);
+    }
+
+    /**
+     * The connection is established
+     */
+    public void connected() {
+        mark(Phase.CONNECT);
+    }
+
+    /**
+     * The request is fully written
+     */
+    public void written() {
+        mark(Phase.WRITE);
+    }
+
+    /**
+     * The response head has arrived
+     */
+    public void responded() {
+        mark(Phase.FIRST_BYTE);
+    }
+
+    /**
+     * The response body is fully read
+     */
+    public void read() {
+        mark(Phase.READ);
+    }
+
+    /**
+     * Report the given {@link Phase} once, the ones skipped are not reported as the time
+     * spent in them is taken by the given one
+     */
+    private void mark(Phase phase) {
+        if (listener == null) return;
+        long now = System.nanoTime(), elapsed;
+        synchronized (this) {
+            if (reached != null && reached.compareTo(phase) >= 0) return;
+            reached = phase;
+            elapsed = now - last;
+            last = now;
+        }
+        listener.timed(host, phase, elapsed);
+    }
+}
@@ -1,5 +1,6 @@
 package com.sinlo.core.http.spec;
 
+import com.sinlo.core.common.util.Jason;
 import com.sinlo.core.http.Fetcha;
 
 /**
@@ -25,6 +26,8 @@ public enum BodyType {
     MULTIPART("multipart/form-data"),
     FORM("application/x-www-form-urlencoded"),
     JSON("application/json"),
+    SMILE("application/x-jackson-smile"),
+    CBOR("application/cbor"),
     XML("application/xml"),
     YAML("text/yaml"),
     EDN("application/edn");
@@ -44,4 +47,18 @@ public enum BodyType {
     public void set(Fetcha<?> fetcha) {
         fetcha.header(HEADER, this.value);
     }
+
+    /**
+     * Get the {@link BodyType} of the given {@link Jason.Mode}
+     */
+    public static BodyType of(Jason.Mode mode) {
+        switch (mode) {
+            case SMILE:
+                return SMILE;
+            case CBOR:
+                return CBOR;
+            default:
+                return JSON;
+        }
+    }
 }
@@ -0,0 +1,133 @@
+package com.sinlo.core.http.spec;
+
+import com.sinlo.sponte.util.Pool;
+
+/**
+ * The per-host circuit breaker. A host is cut off after the given number of consecutive
+ * failures, and after a while a single probe is let through to decide whether to close
+ * the circuit again. A probe that is neither succeeded nor failed within the same while is
+ * taken as failed, so that a lost probe could never hold the circuit half open
+ *
+ * @author sinlo
+ */
+public class Breaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int threshold;
+    private final long open;
+    private final Pool<String, Circuit> circuits = new Pool<>();
+
+    private Breaker(int threshold, long open) {
+        if (threshold <= 0)
+            throw new IllegalArgumentException("The threshold must be positive");
+        this.threshold = threshold;
+        this.open = open;
+    }
+
+    /**
+     * @param threshold the number of consecutive failures to open a circuit
+     * @param open      how long in millis a circuit stays open before the probe, and how
+     *                  long the probe is waited for
+     */
+    public static Breaker of(int threshold, long open) {
+        return new Breaker(threshold, open);
+    }
+
+    /**
+     * Check if a request to the given host is allowed
+     */
+    public boolean allows(String host) {
+        return circuit(host).allows();
+    }
+
+    /**
+     * Record a success of the given host
+     */
+    public void succeed(String host) {
+        circuit(host).succeed();
+    }
+
+    /**
+     * Record a failure of the given host
+     */
+    public void fail(String host) {
+        circuit(host).fail();
+    }
+
+    /**
+     * Get the {@link State} of the given host
+     */
+    public State state(String host) {
+        return circuit(host).state();
+    }
+
+    private Circuit circuit(String host) {
+        return circuits.get(host, Circuit::new);
+    }
+
+    private class Circuit {
+
+        private State state = State.CLOSED;
+        private int failures;
+        private long openedAt;
+        private long probedAt;
+
+        private synchronized State state() {
+            expire(System.currentTimeMillis());
+            return state;
+        }
+
+        private synchronized boolean allows() {
+            final long now = System.currentTimeMillis();
+            expire(now);
+            switch (state) {
+                case CLOSED:
+                    return true;
+                case OPEN:
+                    if (now - openedAt < open) return false;
+                    // let the probe through
+                    state = State.HALF_OPEN;
+                    probedAt = now;
+                    return true;
+                default:
+                    // the probe is in flight
+                    return false;
+            }
+        }
+
+        /**
+         * Open again if the probe is not settled in time
+         */
+        private void expire(long now) {
+            if (state == State.HALF_OPEN && now - probedAt >= open) {
+                state = State.OPEN;
+                openedAt = probedAt + open;
+            }
+        }
+
+        private synchronized void succeed() {
+            failures = 0;
+            state = State.CLOSED;
+        }
+
+        private synchronized void fail() {
+            if (state == State.HALF_OPEN || ++failures >= threshold) {
+                state = State.OPEN;
+                openedAt = System.currentTimeMillis();
+            }
+        }
+    }
+
+    /**
+     * The circuit of the host is open
+     */
+    public static class Open extends RuntimeException {
+
+        public Open(String host) {
+            super(String.format("The circuit of the host [ %s ] is open", host));
+        }
+    }
+}
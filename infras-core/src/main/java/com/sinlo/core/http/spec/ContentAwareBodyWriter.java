@@ -1,9 +1,11 @@
 package com.sinlo.core.http.spec;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.charset.Charset;
 import java.util.function.Consumer;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * The content aware body writer
@@ -33,6 +35,19 @@ public class ContentAwareBodyWriter implements Consumer<OutputStream> {
         return this.content;
     }
 
+    /**
+     * Get a {@link ContentAwareBodyWriter} of the content compressed by gzip
+     */
+    public ContentAwareBodyWriter gzip() {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(content.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(baos)) {
+            gzip.write(content);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return new ContentAwareBodyWriter(baos.toByteArray(), charset);
+    }
+
     @Override
     public String toString() {
         return new String(content, charset);
@@ -6,13 +6,26 @@ package com.sinlo.core.http.spec;
  * @author sinlo
  */
 public enum Method {
-    GET,
-    HEAD,
-    POST,
-    PUT,
-    DELETE,
-    CONNECT,
-    OPTIONS,
-    TRACE,
-    PATCH
+    GET(true),
+    HEAD(true),
+    POST(false),
+    PUT(true),
+    DELETE(true),
+    CONNECT(false),
+    OPTIONS(true),
+    TRACE(true),
+    PATCH(false);
+
+    private final boolean idempotent;
+
+    Method(boolean idempotent) {
+        this.idempotent = idempotent;
+    }
+
+    /**
+     * Check if the method is idempotent as defined by RFC 7231
+     */
+    public boolean isIdempotent() {
+        return idempotent;
+    }
 }
@@ -0,0 +1,181 @@
+package com.sinlo.core.http.spec;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The retry policy of exponential backoff with full jitter. Besides the retries asked by
+ * the interceptors via {@link Next#RETRY}, it retries on the given {@link Status statuses}
+ * and exceptions of the idempotent {@link Method methods}. It is immutable, each of the
+ * configuring methods returns a configured copy, so that a shared policy such as the
+ * {@link #DEFAULT} could never be changed by anyone
+ *
+ * @author sinlo
+ */
+public class Retry {
+
+    /**
+     * The default policy, which retries only what the interceptors ask for, at most 3 times
+     */
+    public static final Retry DEFAULT = of(3);
+
+    private final int retries;
+    private final long base;
+    private final long max;
+    private final double multiplier;
+    private final boolean jitter;
+    private final boolean unsafe;
+    private final BitSet statuses;
+    private final List<Class<? extends Throwable>> exceptions;
+
+    private Retry(int retries, long base, long max, double multiplier, boolean jitter,
+                  boolean unsafe, BitSet statuses, List<Class<? extends Throwable>> exceptions) {
+        if (retries < 0)
+            throw new IllegalArgumentException("The number of retries must not be negative");
+        this.retries = retries;
+        this.base = base;
+        this.max = max;
+        this.multiplier = multiplier;
+        this.jitter = jitter;
+        this.unsafe = unsafe;
+        this.statuses = statuses;
+        this.exceptions = exceptions;
+    }
+
+    /**
+     * Retry at most the given times
+     */
+    public static Retry of(int retries) {
+        return new Retry(retries, 100, 10_000, 2, true, false,
+                new BitSet(600), Collections.emptyList());
+    }
+
+    /**
+     * The delay before the first retry, and the cap of all delays, in millis
+     */
+    public Retry backoff(long base, long max) {
+        if (base < 0 || max < base)
+            throw new IllegalArgumentException("Expecting 0 <= base <= max");
+        return new Retry(retries, base, max, multiplier, jitter, unsafe, statuses, exceptions);
+    }
+
+    /**
+     * How many times each delay is longer than the previous one
+     */
+    public Retry multiplier(double multiplier) {
+        if (multiplier < 1)
+            throw new IllegalArgumentException("The multiplier must not be less than 1");
+        return new Retry(retries, base, max, multiplier, jitter, unsafe, statuses, exceptions);
+    }
+
+    /**
+     * Wait exactly the backoff delays instead of a random duration up to them
+     */
+    public Retry jitterless() {
+        return new Retry(retries, base, max, multiplier, false, unsafe, statuses, exceptions);
+    }
+
+    /**
+     * Also retry on the given {@link Status statuses}
+     */
+    public Retry on(Status... statuses) {
+        BitSet more = (BitSet) this.statuses.clone();
+        for (Status status : statuses) {
+            more.set(status.value());
+        }
+        return new Retry(retries, base, max, multiplier, jitter, unsafe, more, exceptions);
+    }
+
+    /**
+     * Also retry on the given types of exceptions
+     */
+    @SafeVarargs
+    public final Retry on(Class<? extends Throwable>... exceptions) {
+        List<Class<? extends Throwable>> more = new ArrayList<>(this.exceptions);
+        Collections.addAll(more, exceptions);
+        return new Retry(retries, base, max, multiplier, jitter, unsafe, statuses,
+                Collections.unmodifiableList(more));
+    }
+
+    /**
+     * Also retry the statuses and exceptions of the non-idempotent {@link Method methods},
+     * which may have taken effect on the server once or more
+     */
+    public Retry unsafely() {
+        return new Retry(retries, base, max, multiplier, jitter, true, statuses, exceptions);
+    }
+
+    /**
+     * Check if the statuses and exceptions of the given {@link Method} could be retried,
+     * which are only of the idempotent ones unless {@link #unsafely()}
+     */
+    public boolean retries(Method method) {
+        return unsafe || method.isIdempotent();
+    }
+
+    /**
+     * Check if the given attempt, which starts from 1, could be followed by a retry
+     */
+    public boolean allows(int attempt) {
+        return attempt <= retries;
+    }
+
+    /**
+     * Check if the given status code should be retried
+     */
+    public boolean retries(int code) {
+        return code >= 0 && statuses.get(code);
+    }
+
+    /**
+     * Check if any status is to be retried
+     */
+    public boolean watchesStatuses() {
+        return !statuses.isEmpty();
+    }
+
+    /**
+     * Check if the given exception should be retried
+     */
+    public boolean retries(Throwable e) {
+        while ((e instanceof CompletionException || e instanceof ExecutionException)
+                && e.getCause() != null) {
+            e = e.getCause();
+        }
+        for (Class<? extends Throwable> type : exceptions) {
+            if (type.isInstance(e)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * The delay in millis before retrying the given attempt
+     */
+    public long delay(int attempt) {
+        double exp = base * Math.pow(multiplier, attempt - 1);
+        long cap = exp >= max ? max : (long) exp;
+        return jitter ? ThreadLocalRandom.current().nextLong(cap + 1) : cap;
+    }
+
+    /**
+     * The delay in millis before retrying the given attempt, no shorter than what the
+     * {@code Retry-After} header asks for but still capped
+     *
+     * @param retryAfter the {@code Retry-After} header in seconds, or null if none
+     */
+    public long delay(int attempt, String retryAfter) {
+        long delay = delay(attempt);
+        if (retryAfter == null) return delay;
+        try {
+            return Math.max(delay, Math.min(max, Long.parseLong(retryAfter.trim()) * 1000));
+        } catch (NumberFormatException e) {
+            // an http date is not honored
+            return delay;
+        }
+    }
+}
@@ -477,14 +477,31 @@ public enum Status {
     NETWORK_AUTHENTICATION_REQUIRED(511, "Network Authentication Required");
 
 
+    /**
+     * The dense table indexed by the status code, see {@link #resolve(int)}
+     */
+    private static final Status[] TABLE = new Status[600];
+
+    static {
+        for (Status status : values()) {
+            // the first one wins as the deprecated aliases come later
+            if (TABLE[status.value] == null) {
+                TABLE[status.value] = status;
+            }
+        }
+    }
+
     private final int value;
 
     private final String reasonPhrase;
 
+    private final Series series;
+
 
     Status(int value, String reasonPhrase) {
         this.value = value;
         this.reasonPhrase = reasonPhrase;
+        this.series = Series.resolve(value);
     }
 
 
@@ -508,7 +525,7 @@ public enum Status {
      * @see Status.Series
      */
     public Series series() {
-        return Series.valueOf(this);
+        return this.series;
     }
 
     /**
@@ -520,7 +537,7 @@ public enum Status {
      * @since 4.0
      */
     public boolean is1xxInformational() {
-        return (series() == Series.INFORMATIONAL);
+        return (this.series == Series.INFORMATIONAL);
     }
 
     /**
@@ -532,7 +549,7 @@ public enum Status {
      * @since 4.0
      */
     public boolean is2xxSuccessful() {
-        return (series() == Series.SUCCESSFUL);
+        return (this.series == Series.SUCCESSFUL);
     }
 
     /**
@@ -544,7 +561,7 @@ public enum Status {
      * @since 4.0
      */
     public boolean is3xxRedirection() {
-        return (series() == Series.REDIRECTION);
+        return (this.series == Series.REDIRECTION);
     }
 
     /**
@@ -556,7 +573,7 @@ public enum Status {
      * @since 4.0
      */
     public boolean is4xxClientError() {
-        return (series() == Series.CLIENT_ERROR);
+        return (this.series == Series.CLIENT_ERROR);
     }
 
     /**
@@ -568,7 +585,7 @@ public enum Status {
      * @since 4.0
      */
     public boolean is5xxServerError() {
-        return (series() == Series.SERVER_ERROR);
+        return (this.series == Series.SERVER_ERROR);
     }
 
     /**
@@ -617,12 +634,62 @@ public enum Status {
      * @since 5.0
      */
     public static Status resolve(int statusCode) {
-        for (Status status : values()) {
-            if (status.value == statusCode) {
-                return status;
-            }
-        }
-        return null;
+        return (statusCode >= 0 && statusCode < TABLE.length ? TABLE[statusCode] : null);
+    }
+
+    /**
+     * Whether the given status code is in the HTTP series
+     * {@link Status.Series#SUCCESSFUL}, without resolving it.
+     *
+     * @param statusCode the HTTP status code (potentially non-standard)
+     * @see Series#includes(int)
+     */
+    public static boolean is2xxSuccessful(int statusCode) {
+        return Series.SUCCESSFUL.includes(statusCode);
+    }
+
+    /**
+     * Whether the given status code is in the HTTP series
+     * {@link Status.Series#REDIRECTION}, without resolving it.
+     *
+     * @param statusCode the HTTP status code (potentially non-standard)
+     * @see Series#includes(int)
+     */
+    public static boolean is3xxRedirection(int statusCode) {
+        return Series.REDIRECTION.includes(statusCode);
+    }
+
+    /**
+     * Whether the given status code is in the HTTP series
+     * {@link Status.Series#CLIENT_ERROR}, without resolving it.
+     *
+     * @param statusCode the HTTP status code (potentially non-standard)
+     * @see Series#includes(int)
+     */
+    public static boolean is4xxClientError(int statusCode) {
+        return Series.CLIENT_ERROR.includes(statusCode);
+    }
+
+    /**
+     * Whether the given status code is in the HTTP series
+     * {@link Status.Series#SERVER_ERROR}, without resolving it.
+     *
+     * @param statusCode the HTTP status code (potentially non-standard)
+     * @see Series#includes(int)
+     */
+    public static boolean is5xxServerError(int statusCode) {
+        return Series.SERVER_ERROR.includes(statusCode);
+    }
+
+    /**
+     * Whether the given status code is in the HTTP series
+     * {@link Status.Series#CLIENT_ERROR} or
+     * {@link Status.Series#SERVER_ERROR}, without resolving it.
+     *
+     * @param statusCode the HTTP status code (potentially non-standard)
+     */
+    public static boolean isError(int statusCode) {
+        return (statusCode >= 400 && statusCode < 600);
     }
 
 
@@ -638,6 +705,11 @@ public enum Status {
         CLIENT_ERROR(4),
         SERVER_ERROR(5);
 
+        /**
+         * The series indexed by their values minus 1, see {@link #resolve(int)}
+         */
+        private static final Series[] TABLE = values();
+
         private final int value;
 
         Series(int value) {
@@ -651,6 +723,15 @@ public enum Status {
             return this.value;
         }
 
+        /**
+         * Whether the given status code belongs to this series.
+         *
+         * @param statusCode the HTTP status code (potentially non-standard)
+         */
+        public boolean includes(int statusCode) {
+            return (statusCode >= this.value * 100 && statusCode < (this.value + 1) * 100);
+        }
+
         /**
          * Return the enum constant of this type with the corresponding series.
          *
@@ -659,7 +740,7 @@ public enum Status {
          * @throws IllegalArgumentException if this enum has no corresponding constant
          */
         public static Series valueOf(Status status) {
-            return valueOf(status.value);
+            return status.series;
         }
 
         /**
@@ -685,13 +766,10 @@ public enum Status {
          * @since 5.1.3
          */
         public static Series resolve(int statusCode) {
-            int seriesCode = statusCode / 100;
-            for (Series series : values()) {
-                if (series.value == seriesCode) {
-                    return series;
-                }
+            if (statusCode < 100 || statusCode >= 600) {
+                return null;
             }
-            return null;
+            return TABLE[statusCode / 100 - 1];
         }
     }
 
@@ -12,11 +12,14 @@ import com.sinlo.sponte.spec.Profile;
 import com.sinlo.sponte.spec.SponteAware;
 import com.sinlo.sponte.util.Pool;
 import com.sinlo.sponte.util.Signature;
+import com.sinlo.sponte.util.Startup;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.AnnotatedElement;
 import java.lang.reflect.Method;
 import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 
@@ -32,6 +35,16 @@ public class Pond {
     private static final AtomicReference<Pond> instance = new AtomicReference<>();
     private static final Pool.Simple<Object> p = new Pool.Simple<>();
 
+    /**
+     * The payloads of the delegated methods by their signatures, of every pivot annotation
+     */
+    private static final ClassValue<Map<String, Object>> payloads = new ClassValue<Map<String, Object>>() {
+        @Override
+        protected Map<String, Object> computeValue(Class<?> pivot) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
     private Pond() {
     }
 
@@ -166,7 +179,8 @@ public class Pond {
         @SuppressWarnings("unchecked")
         @Override
         default <R> R act(Agent.Context context, Agent.Mission<R> mission) {
-            L payload = (L) Pond.p.get(Keeper.key(context.self.pivot(), context.signature));
+            // the signature hashes only once as it is a constant of the delegated class
+            L payload = (L) Pond.payloads.get(context.self.pivot()).get(context.signature);
             if (payload != null) {
                 return handle(context, mission, payload);
             }
@@ -210,6 +224,17 @@ public class Pond {
             return IDENTIFIER.concat(pivot.getName()).concat("~").concat(signature);
         }
 
+        /**
+         * Keep the payload of the given method for the given pivot annotation, which is
+         * looked up by the {@link Delegate} without building any {@link #key(Class, String)}
+         */
+        static void keep(Class<? extends Annotation> pivot, Method method, Object payload) {
+            Map<String, Object> kept = Pond.payloads.get(pivot);
+            String signature = Signature.of(method).toString();
+            if (payload == null) kept.remove(signature);
+            else kept.put(signature, payload);
+        }
+
         /**
          * The keeper maintains the delegation of a given type here
          *
@@ -256,9 +281,9 @@ public class Pond {
                         if (!should(pivot == null ? enc : pivot, m, lazy)) return;
                         // maintain payloads
                         if (pivot != null) {
-                            Pond.p.place(key(pivot.annotationType(), m), payload(pivot, service, m));
+                            keep(pivot.annotationType(), m, payload(pivot, service, m));
                         } else if (!lazy) {
-                            Pond.p.place(key(enc.annotationType(), m), generalPayload);
+                            keep(enc.annotationType(), m, generalPayload);
                         }
                         // lazy and not annotated with the pivot annotation, keep it null
                     });
@@ -284,9 +309,14 @@ public class Pond {
         @SuppressWarnings("unchecked")
         @Override
         default void onExplore(Profile profile, Object payload) {
-            maintain(profile.type, null,
-                    (Profile.Subjectifier<T>) profile.subjectifier,
-                    payload instanceof Pump ? (Pump) payload : null);
+            long start = Startup.start();
+            try {
+                maintain(profile.type, null,
+                        (Profile.Subjectifier<T>) profile.subjectifier,
+                        payload instanceof Pump ? (Pump) payload : null);
+            } finally {
+                Startup.stop(Startup.Phase.MAINTAIN, profile.type.getName(), start);
+            }
         }
 
         @Override
@@ -1,6 +1,5 @@
 package com.sinlo.core.service;
 
-import com.sinlo.core.common.util.Try;
 import com.sinlo.core.domain.persistor.Persistor;
 import com.sinlo.core.domain.persistor.spec.Entity;
 import com.sinlo.core.domain.persistor.spec.Repo;
@@ -16,11 +15,11 @@ import com.sinlo.sponte.util.Typer;
 import java.lang.annotation.*;
 import java.lang.reflect.Method;
 import java.util.*;
-import java.util.function.Consumer;
+import java.util.concurrent.Callable;
 
 /**
  * The classes that are annotated by this annotation will be processed and wrapped into a proxy
- * which delegates methods with {@link Persistor#enclose(Consumer, Selector)}, and registered
+ * which delegates methods with {@link Persistor#scope(Selector, Callable)}, and registered
  * the delegated object into the {@link Pond}
  *
  * @author sinlo
@@ -61,15 +60,7 @@ public @interface Proxistor {
         @Override
         public <R> R handle(Agent.Context context, Agent.Mission<R> mission,
                             Map.Entry<Selector, Persistor> payload) {
-            try (Persistor.Stub stub = payload.getValue()
-                    .enclose(null, payload.getKey())) {
-                try {
-                    return mission.call(context.args);
-                } catch (Exception e) {
-                    stub.cancel();
-                    return Try.toss(e);
-                }
-            }
+            return (R) payload.getValue().scope(payload.getKey(), () -> mission.call(context.args));
         }
     }
 
@@ -0,0 +1,212 @@
+package com.sinlo.core.common.util
+
+import spock.lang.Specification
+
+import java.text.SimpleDateFormat
+import java.time.Instant
+import java.time.LocalDateTime
+import java.time.ZoneId
+import java.time.ZoneOffset
+
+class DatyTest extends Specification {
+
+    def "should poly parser properly parse common shapes"() {
+        given:
+        def parser = Daty.PolyParser.builder()
+                .timeZone(TimeZone.getTimeZone("UTC"))
+                .fallback("yyyyMMdd")
+                .build()
+
+        expect:
+        parser.instant(raw) == Instant.parse(expected)
+
+        where:
+        raw                                   || expected
+        "2020-01-02"                          || "2020-01-02T00:00:00Z"
+        "2020/01/02"                          || "2020-01-02T00:00:00Z"
+        "02/01/2020"                          || "2020-01-02T00:00:00Z"
+        "2020-01-02 03:04:05"                 || "2020-01-02T03:04:05Z"
+        "2020-01-02 03:04:05.123456"          || "2020-01-02T03:04:05.123456Z"
+        "2020-01-02T03:04:05.123Z"            || "2020-01-02T03:04:05.123Z"
+        "2020-01-02T03:04:05.123+08:00"       || "2020-01-01T19:04:05.123Z"
+        "2020-01-02T03:04:05-0130"            || "2020-01-02T04:34:05Z"
+        "20200102"                            || "2020-01-02T00:00:00Z"
+    }
+
+    def "should poly parser refuse unknown shapes"() {
+        when:
+        Daty.PARSER.parse("not a date")
+
+        then:
+        thrown(Daty.NoValidParserException)
+    }
+
+    def "should poly parser fall through on out of range fields"() {
+        given:
+        def parser = Daty.PolyParser.builder()
+                .timeZone(TimeZone.getTimeZone("UTC"))
+                .fallback("yyyy-dd-MM")
+                .build()
+
+        when:
+        Daty.PARSER.parse("2020-13-01")
+
+        then:
+        thrown(Daty.NoValidParserException)
+
+        expect:
+        parser.instant("2020-13-01") == Instant.parse("2020-01-13T00:00:00Z")
+    }
+
+    static SimpleDateFormat sdf(String pattern, String zone) {
+        def df = new SimpleDateFormat(pattern)
+        df.timeZone = TimeZone.getTimeZone(zone)
+        df
+    }
+
+    def "should legacy builder methods still select the date formats as they are"() {
+        given:
+        def parser = Daty.PolyParser.builder()
+                .timeZone(TimeZone.getTimeZone("UTC"))
+                .when({ String s -> s.charAt(2) == '.' })
+                .brief(sdf("dd.MM.yyyy", "GMT+08:00"))
+                .and()
+                .when({ String s -> s.charAt(4) == '-' })
+                .full(sdf("yyyy-MM-dd HH:mm:ss.SSSSSS", "UTC"))
+                .and()
+                .build()
+
+        expect:
+        // in the own time zone of the date format
+        parser.instant("02.01.2020") == Instant.parse("2020-01-01T16:00:00Z")
+        // the SSSSSS is read as milliseconds by a SimpleDateFormat
+        parser.instant("2020-01-02 03:04:05.001500") == Instant.parse("2020-01-02T03:04:06.500Z")
+        // not selected, hence the built-in shape
+        parser.instant("2020-01-02 03:04:05") == Instant.parse("2020-01-02T03:04:05Z")
+        parser.choose("02.01.2020").get().is(parser.collection(10).values().first())
+        !parser.choose("2020-01-02").isPresent()
+    }
+
+    def "should legacy fallback be replaced and tried after all the others"() {
+        given:
+        def parser = Daty.PolyParser.builder()
+                .timeZone(TimeZone.getTimeZone("UTC"))
+                .fallback(sdf("yyyy", "UTC"))
+                .fallback(sdf("yyyyMMdd", "UTC"))
+                .fallback("dd.MM.yyyy")
+                .build()
+
+        expect:
+        parser.instant("20200102") == Instant.parse("2020-01-02T00:00:00Z")
+        parser.instant("02.01.2020") == Instant.parse("2020-01-02T00:00:00Z")
+        parser.choose("20200102").get().toPattern() == "yyyyMMdd"
+    }
+
+    def "should calendar helpers agree with calendar"() {
+        given:
+        def zone = TimeZone.getTimeZone("America/New_York")
+        def daty = Daty.of(zone)
+        def date = Date.from(Instant.parse(raw))
+        def cal = Daty.calendar(date, zone)
+
+        expect:
+        daty.get(date, field) == cal.get(field)
+        daty.same(date, new Date(date.time + 1), field)
+        daty.dayOneOfMonth(date, 1) == cal.with {
+            add(Calendar.MONTH, 1)
+            set(Calendar.DAY_OF_MONTH, 1)
+            time
+        }
+
+        where:
+        raw                        || field
+        "2020-03-08T06:59:58Z"     || Calendar.HOUR_OF_DAY
+        "2020-03-08T07:00:00Z"     || Calendar.DAY_OF_WEEK
+        "2020-11-01T05:30:00Z"     || Calendar.DAY_OF_YEAR
+        "1969-12-31T23:59:59Z"     || Calendar.MONTH
+        "2021-02-28T12:00:00Z"     || Calendar.AM_PM
+        "2020-03-08T07:30:00Z"     || Calendar.MINUTE
+        "2020-11-01T06:00:00Z"     || Calendar.HOUR
+        "1500-06-15T12:00:00Z"     || Calendar.DAY_OF_YEAR
+        "1582-10-04T12:00:00Z"     || Calendar.DAY_OF_MONTH
+        "1582-10-15T12:00:00Z"     || Calendar.DAY_OF_WEEK
+    }
+
+    def "should week and year helpers agree with calendar across locales"() {
+        given:
+        def zone = TimeZone.getTimeZone(tz)
+        def daty = Daty.of(zone, locale)
+        def millis = Instant.parse(raw).toEpochMilli()
+        def cal = {
+            def c = Calendar.getInstance(zone, locale)
+            c.timeInMillis = millis
+            c
+        }
+
+        expect:
+        daty.firstDayOfWeek() == cal().firstDayOfWeek
+        daty.weekday(millis) == cal().get(Calendar.DAY_OF_WEEK)
+        daty.day365(millis) == cal().get(Calendar.DAY_OF_YEAR)
+        daty.get(millis, Calendar.YEAR) == cal().get(Calendar.YEAR)
+        daty.dayOneOfWeek(millis, 1) == cal().with {
+            add(Calendar.WEEK_OF_YEAR, 1)
+            set(Calendar.DAY_OF_WEEK, getActualMinimum(Calendar.DAY_OF_WEEK))
+            timeInMillis
+        }
+        daty.dayOneOfYear(millis, 1) == cal().with {
+            add(Calendar.YEAR, 1)
+            set(Calendar.DAY_OF_YEAR, getActualMinimum(Calendar.DAY_OF_YEAR))
+            timeInMillis
+        }
+
+        where:
+        raw                        | tz                 | locale
+        // a week later is across the daylight saving
+        "2020-03-01T12:00:00Z"     | "America/New_York" | Locale.US
+        "2020-03-25T12:00:00Z"     | "Europe/Paris"     | Locale.FRANCE
+        "2020-03-29T00:30:00Z"     | "Europe/Paris"     | Locale.FRANCE
+        "2020-12-31T23:30:00Z"     | "Europe/Berlin"    | Locale.GERMANY
+        "2020-02-29T12:00:00Z"     | "UTC"              | Locale.US
+        "2020-06-07T12:00:00Z"     | "UTC"              | new Locale("ar", "EG")
+        "2020-06-07T12:00:00Z"     | "Asia/Bangkok"     | new Locale("th", "TH")
+        "1500-03-01T12:00:00Z"     | "UTC"              | Locale.FRANCE
+    }
+
+    def "should default locale be read on every call"() {
+        given:
+        def daty = Daty.of(TimeZone.getTimeZone("UTC"))
+        def previous = Locale.getDefault(Locale.Category.FORMAT)
+
+        when:
+        Locale.setDefault(Locale.Category.FORMAT, Locale.US)
+        def us = daty.firstDayOfWeek()
+        Locale.setDefault(Locale.Category.FORMAT, Locale.FRANCE)
+        def fr = daty.firstDayOfWeek()
+
+        then:
+        us == Calendar.SUNDAY
+        fr == Calendar.MONDAY
+
+        cleanup:
+        Locale.setDefault(Locale.Category.FORMAT, previous)
+    }
+
+    def "should local times in gaps and overlaps resolve like the zoned date time"() {
+        given:
+        def daty = Daty.of(TimeZone.getTimeZone(tz))
+        def ldt = LocalDateTime.parse(local)
+
+        expect:
+        daty.utc(ldt.toInstant(ZoneOffset.UTC).toEpochMilli()) == Instant.parse(expected).toEpochMilli()
+        Instant.parse(expected) == ldt.atZone(ZoneId.of(tz)).toInstant()
+
+        where:
+        local                 | tz                    || expected
+        "2020-11-01T01:30:00" | "America/New_York"    || "2020-11-01T05:30:00Z"
+        "2020-03-08T02:30:00" | "America/New_York"    || "2020-03-08T07:30:00Z"
+        "2020-10-25T01:30:00" | "Europe/Dublin"       || "2020-10-25T00:30:00Z"
+        "2020-03-29T01:30:00" | "Europe/Dublin"       || "2020-03-29T01:30:00Z"
+        "2020-04-05T01:45:00" | "Australia/Lord_Howe" || "2020-04-04T14:45:00Z"
+        "2020-06-01T12:00:00" | "Europe/Dublin"       || "2020-06-01T11:00:00Z"
+    }
+}
@@ -0,0 +1,97 @@
+package com.sinlo.core.common.util
+
+import com.fasterxml.jackson.databind.DeserializationFeature
+import spock.lang.Specification
+
+class JasonTest extends Specification {
+
+    def "should doodle write the same json as the map builder"() {
+        given:
+        def os = new ByteArrayOutputStream()
+        def map = Jason.map(4)
+                .val("a", 1)
+                .val("b", 1, "x")
+                .plant("deep", false).into("p", "q")
+        map.map("m").val("c", true)
+
+        when:
+        Jason.doodle(os).withCloseable {
+            it.val("a", 1)
+                    .val("b", 1, "x")
+                    .plant("deep", "p", "q")
+                    .map("m").val("c", true)
+        }
+
+        then:
+        Jason.parse(os.toString("UTF-8")) == Jason.parse(map.toString())
+    }
+
+    def "should doodle refuse ending the root object"() {
+        when:
+        Jason.doodle(new ByteArrayOutputStream()).end()
+
+        then:
+        thrown(IllegalStateException)
+    }
+
+    def "should binary modes round trip the same values as json"() {
+        given:
+        def value = [a: 42]
+
+        when:
+        def bytes = Jason.serialize(value, mode)
+
+        then:
+        Jason.deserialize(bytes, Map, mode).a == 42
+        Jason.deserialize(bytes, mode).get("a").asInt() == 42
+        Jason.Mode.of(mode.contentType + "; charset=UTF-8") == mode
+
+        where:
+        mode << Jason.Mode.values()
+    }
+
+    def "should configure take effect on the cached codecs"() {
+        given:
+        Jason.parse('{"a":1}', Plain).a == 1
+
+        when:
+        Jason.configure { it.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES) }
+
+        then:
+        Jason.parse('{"a":1,"b":2}', Plain).a == 1
+
+        cleanup:
+        Jason.configure { it.enable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES) }
+    }
+
+    def "should direct changes of the om take effect on the cached codecs"() {
+        given:
+        Jason.parse('{"a":1}', Plain).a == 1
+
+        when:
+        Jason.om().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+
+        then:
+        Jason.parse('{"a":1,"b":2}', Plain).a == 1
+        Jason.deserialize(Jason.serialize(new Plain(a: 1), Jason.Mode.CBOR),
+                Plain, Jason.Mode.CBOR).a == 1
+
+        cleanup:
+        Jason.om().enable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+    }
+
+    def "should codecs of non final types write the runtime types"() {
+        given:
+        def codec = Jason.codec(Object)
+
+        expect:
+        Jason.parse(codec.stringify(value)) == Jason.parse(Jason.stringify(value))
+
+        where:
+        value << [new Plain(a: 1), [a: 2], [1, 2], "s", new Plain(a: 3)]
+    }
+
+    static class Plain {
+        public int a
+    }
+}
@@ -0,0 +1,257 @@
+package com.sinlo.core.domain.persistor
+
+import com.sinlo.core.domain.persistor.spec.Repo
+import com.sinlo.core.domain.persistor.spec.Selector
+import com.sinlo.core.domain.persistor.spec.Tag
+import spock.lang.Shared
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executor
+import java.util.concurrent.Executors
+import java.util.concurrent.RejectedExecutionException
+import java.util.concurrent.TimeUnit
+
+import static com.sinlo.core.domain.persistor.spec.Tag.Channel.*
+
+class PersistorTest extends Specification {
+
+    def persistor = Persistor.of(Note)
+    def notes = new Notes()
+
+    @Shared
+    List<String> compensated = Collections.synchronizedList([])
+
+    def setupSpec() {
+        // the persistor of a class is global, so register the handler only once
+        Persistor.of(Note).compensate({ compensated << "${it.chan}:${it.entity.id()}".toString() })
+    }
+
+    def setup() {
+        compensated.clear()
+    }
+
+    def cleanup() {
+        persistor.clear()
+    }
+
+    def "should fold two channels into the net one"() {
+        expect:
+        first.then(next) == net
+
+        where:
+        first  | next   || net
+        CREATE | CREATE || CREATE
+        CREATE | UPDATE || CREATE
+        CREATE | DELETE || null
+        UPDATE | CREATE || UPDATE
+        UPDATE | UPDATE || UPDATE
+        UPDATE | DELETE || DELETE
+        DELETE | CREATE || UPDATE
+        DELETE | UPDATE || DELETE
+        DELETE | DELETE || DELETE
+    }
+
+    def "should commit the net operation of the repeated tags"() {
+        when:
+        persistor.tag(CREATE, new Note("a", "1", null))
+                .tag(UPDATE, new Note("a", "2", null))
+                .tag(CREATE, new Note("b", "1", null))
+                .tag(DELETE, new Note("b", "1", null))
+                .tag(UPDATE, new Note("c", "1", null))
+                .tag(DELETE, new Note("c", "1", null))
+                .commit(notes)
+
+        then:
+        notes.log == ["create:a:2", "delete:c:1"]
+        !persistor.pending()
+    }
+
+    def "should refuse an update after a delete and an exclusive tag"() {
+        given:
+        persistor.tag(DELETE, new Note("a", "1", null))
+
+        when:
+        persistor.tag(UPDATE, new Note("a", "1", null))
+
+        then:
+        thrown(Tag.ChannelConflictingException)
+
+        when:
+        persistor.tag(DELETE, new Note("a", "1", null), true)
+
+        then:
+        thrown(Tag.ChannelConflictingException)
+        persistor.stat(new Note("a", null, null)) == DELETE
+    }
+
+    def "should commit only the dirty properties of a loaded entity"() {
+        given:
+        def selector = { notes } as Selector
+
+        when:
+        persistor.scope(selector, {
+            def note = persistor.load(new Note("a", "1", "body"))
+            note.title = "2"
+            persistor.tag(UPDATE, note)
+            def same = persistor.load(new Note("b", "1", "body"))
+            persistor.tag(UPDATE, same)
+        })
+
+        then:
+        notes.log == ["update:a:[title]"]
+    }
+
+    def "should update a whole entity loaded outside any scope"() {
+        when:
+        def note = persistor.load(new Note("a", "1", "body"))
+        note.title = "2"
+        persistor.tag(UPDATE, note).commit(notes)
+
+        then:
+        notes.log == ["update:a:2"]
+    }
+
+    def "should drop the snapshots at the end of the outermost scope"() {
+        given:
+        def selector = { notes } as Selector
+        def note = new Note("a", "1", "body")
+
+        when:
+        persistor.scope(selector, { persistor.load(note) })
+        persistor.scope(selector, { persistor.tag(UPDATE, note) })
+
+        then:
+        notes.log == ["update:a:1"]
+    }
+
+    def "should update as a whole by a repo not updating partially"() {
+        given:
+        def updated = []
+        def repo = new Repo<Note>() {
+            void create(Note note) {}
+
+            void update(Note note) { updated << note.title }
+
+            void delete(Note note) {}
+        }
+
+        when:
+        persistor.scope({ repo } as Selector, {
+            def note = persistor.load(new Note("a", "1", "body"))
+            note.body = "changed"
+            persistor.tag(UPDATE, note)
+        })
+
+        then:
+        updated == ["1"]
+    }
+
+    def "should compensate the committed entities in reverse when a concurrent commit fails"() {
+        given:
+        def a = new Notes()
+        def b = new Notes().before({ if (it.id() == "b2") throw new IllegalStateException("b2") })
+        // runs the queued repository right away, so that a is done before b starts
+        def direct = { it.run() } as Executor
+
+        when:
+        persistor.tag(CREATE, new Note("a1", "1", null))
+                .tag(UPDATE, new Note("b1", "1", null))
+                .tag(CREATE, new Note("a2", "1", null))
+                .tag(DELETE, new Note("b2", "1", null))
+                .commit(direct, { it.id().startsWith("a") ? a : b } as Selector)
+
+        then:
+        def e = thrown(IllegalStateException)
+        e.message == "b2"
+        a.log == ["create:a1:1", "create:a2:1"]
+        b.log == ["update:b1:1"]
+        compensated == ["UPDATE:b1", "CREATE:a2", "CREATE:a1"]
+        !persistor.pending()
+    }
+
+    def "should stop the repositories not yet done at the first failure"() {
+        given:
+        def a = new Notes().before({ throw new IllegalStateException(it.id()) })
+        def b = new Notes()
+
+        when:
+        persistor.tag(CREATE, new Note("a1", "1", null))
+                .tag(CREATE, new Note("b1", "1", null))
+                .commit({ it.run() } as Executor, { it.id().startsWith("a") ? a : b } as Selector)
+
+        then:
+        thrown(IllegalStateException)
+        b.log.isEmpty()
+        compensated.isEmpty()
+    }
+
+    def "should commit the repositories concurrently on a real pool in the order of each"() {
+        given:
+        def pool = Executors.newFixedThreadPool(2)
+        // every repository waits for the others, so they must be running at the same time
+        def together = new CountDownLatch(3)
+        def repos = ["a", "b", "c"].collectEntries { id ->
+            [(id): new Notes().before({
+                if (it.title == "1") {
+                    together.countDown()
+                    assert together.await(5, TimeUnit.SECONDS)
+                }
+            })]
+        }
+
+        when:
+        (1..5).each { i -> ["a", "b", "c"].each { persistor.tag(CREATE, new Note("$it$i", "$i", null)) } }
+        persistor.commit(pool, { repos[it.id().substring(0, 1)] } as Selector)
+
+        then:
+        repos.every { id, notes -> notes.log == (1..5).collect { "create:$id$it:$it" } }
+        compensated.isEmpty()
+
+        cleanup:
+        pool.shutdownNow()
+    }
+
+    def "should wait for the submitted and compensate when the executor rejects"() {
+        given:
+        def a = new Notes()
+        def b = new Notes()
+        def c = new Notes()
+        def submitted = 0
+        def refusing = { Runnable r ->
+            if (submitted++ > 0) throw new RejectedExecutionException("full")
+            Thread.start { sleep(20); r.run() }
+        } as Executor
+
+        when:
+        persistor.tag(CREATE, new Note("a1", "1", null))
+                .tag(CREATE, new Note("b1", "1", null))
+                .tag(CREATE, new Note("c1", "1", null))
+                .commit(refusing, { [a: a, b: b, c: c][it.id().substring(0, 1)] } as Selector)
+
+        then:
+        def e = thrown(RejectedExecutionException)
+        e.message == "full"
+        b.log.isEmpty()
+        c.log.isEmpty()
+        compensated == a.log.reverse().collect { "CREATE:${it.split(":")[1]}".toString() }
+    }
+
+    def "should compensate when a repository throws an error"() {
+        given:
+        def a = new Notes()
+        def b = new Notes().before({ throw new AssertionError((Object) it.id()) })
+
+        when:
+        persistor.tag(CREATE, new Note("a1", "1", null))
+                .tag(CREATE, new Note("b1", "1", null))
+                .commit({ it.run() } as Executor, { it.id().startsWith("a") ? a : b } as Selector)
+
+        then:
+        def e = thrown(AssertionError)
+        e.message == "b1"
+        a.log == ["create:a1:1"]
+        compensated == ["CREATE:a1"]
+        !persistor.pending()
+    }
+}
@@ -0,0 +1,138 @@
+package com.sinlo.core.domain.persistor
+
+import com.sinlo.core.domain.persistor.spec.Selector
+import spock.lang.Specification
+import spock.lang.Subject
+
+import static com.sinlo.core.domain.persistor.spec.Tag.Channel.*
+
+@Subject(Persistor)
+class ScopeTest extends Specification {
+
+    def persistor = Persistor.of(Note)
+    def notes = new Notes()
+
+    def cleanup() {
+        persistor.clear()
+    }
+
+    def "should undo the tags of a nested scope that throws"() {
+        given:
+        def selector = { notes } as Selector
+
+        when:
+        persistor.scope(selector, {
+            persistor.tag(CREATE, new Note("a", "1", null))
+            try {
+                persistor.scope(selector, {
+                    persistor.tag(DELETE, new Note("a", "1", null))
+                    persistor.tag(CREATE, new Note("b", "1", null))
+                    throw new IllegalStateException("inner")
+                })
+            } catch (IllegalStateException ignored) {
+                // the outer one goes on
+            }
+            persistor.tag(CREATE, new Note("c", "1", null))
+        })
+
+        then:
+        notes.log == ["create:a:1", "create:c:1"]
+        !persistor.pending()
+    }
+
+    def "should undo the tags of the scopes nested in the one that throws"() {
+        given:
+        def selector = { notes } as Selector
+
+        when:
+        persistor.scope(selector, {
+            persistor.tag(CREATE, new Note("a", "1", null))
+            try {
+                persistor.scope(selector, {
+                    persistor.scope(selector, {
+                        persistor.tag(UPDATE, new Note("a", "2", null))
+                        persistor.untag(new Note("a", null, null).key())
+                    })
+                    persistor.scope(selector, { persistor.tag(CREATE, new Note("b", "1", null)) })
+                    throw new IllegalStateException("middle")
+                })
+            } catch (IllegalStateException ignored) {
+                // the outer one goes on
+            }
+        })
+
+        then:
+        notes.log == ["create:a:1"]
+    }
+
+    def "should not bring back what is committed inside a nested scope that throws"() {
+        given:
+        def selector = { notes } as Selector
+
+        when:
+        persistor.scope(selector, {
+            persistor.tag(CREATE, new Note("a", "1", null))
+            try {
+                persistor.scope(selector, {
+                    persistor.commit(selector)
+                    persistor.tag(CREATE, new Note("b", "1", null))
+                    throw new IllegalStateException("inner")
+                })
+            } catch (IllegalStateException ignored) {
+                // the outer one goes on
+            }
+        })
+
+        then:
+        notes.log == ["create:a:1"]
+        !persistor.pending()
+    }
+
+    def "should commit a nested scope only at the end of the outermost one"() {
+        given:
+        def selector = { notes } as Selector
+        def inside = null
+
+        when:
+        persistor.scope(selector, {
+            persistor.scope(selector, { persistor.tag(CREATE, new Note("a", "1", null)) })
+            inside = new ArrayList<>(notes.log)
+        })
+
+        then:
+        inside == []
+        notes.log == ["create:a:1"]
+    }
+
+    def "should drop all if the outer scope throws after a nested one returned"() {
+        when:
+        persistor.scope({ notes } as Selector, {
+            persistor.scope({ notes } as Selector, { persistor.tag(CREATE, new Note("a", "1", null)) })
+            throw new IllegalStateException("outer")
+        })
+
+        then:
+        thrown(IllegalStateException)
+        notes.log.isEmpty()
+        !persistor.pending()
+    }
+
+    def "should commit the entities of a nested scope by its own selector"() {
+        given:
+        def inner = new Notes()
+
+        when:
+        persistor.scope({ it.id() == "a" ? notes : null } as Selector, {
+            persistor.tag(CREATE, new Note("a", "1", null))
+            persistor.scope({ inner } as Selector, {
+                persistor.tag(CREATE, new Note("b", "1", null))
+                // selected by the outer one first
+                persistor.tag(UPDATE, new Note("a", "2", null))
+            })
+        })
+
+        then:
+        notes.log == ["create:a:2"]
+        inner.log == ["create:b:1"]
+    }
+}
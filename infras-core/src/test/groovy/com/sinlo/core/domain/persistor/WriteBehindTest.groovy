@@ -0,0 +1,175 @@
+package com.sinlo.core.domain.persistor
+
+import com.sinlo.core.domain.persistor.spec.Tag
+import spock.lang.Specification
+
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.TimeUnit
+
+class WriteBehindTest extends Specification {
+
+    def persistor = Persistor.of(Note)
+    def notes = new Notes()
+
+    def cleanup() {
+        persistor.behind(null)
+    }
+
+    def commit(String id, String title) {
+        persistor.tag(Tag.Channel.UPDATE, new Note(id, title, null)).commit(notes)
+    }
+
+    def "should write the entities of the same key in the order of being committed"() {
+        given:
+        persistor.behind(WriteBehind.of(1024).workers(4).batch(8).interval(5))
+
+        when:
+        (1..50).each { i -> ["a", "b", "c", "d", "e"].each { commit(it, "$i") } }
+        persistor.flush().get(5, TimeUnit.SECONDS)
+
+        then:
+        notes.log.size() == 250
+        ["a", "b", "c", "d", "e"].every { id ->
+            notes.log.findAll { it.startsWith("update:$id:") } == (1..50).collect { "update:$id:$it" }
+        }
+    }
+
+    def "should commit return before writing and flush wait for it"() {
+        given:
+        persistor.behind(WriteBehind.of(16).interval(1000))
+
+        when:
+        commit("a", "1")
+
+        then:
+        notes.log.isEmpty()
+
+        when:
+        persistor.flush().get(5, TimeUnit.SECONDS)
+
+        then:
+        notes.log == ["update:a:1"]
+    }
+
+    def "should retry a failed write together with the ones after it"() {
+        given:
+        def failures = 0
+        notes.before { n -> if (n.id() == "a" && failures++ < 2) throw new IllegalStateException() }
+        persistor.behind(WriteBehind.of(16).batch(4).interval(1).attempts(3))
+
+        when:
+        commit("a", "1")
+        commit("b", "1")
+        persistor.flush().get(5, TimeUnit.SECONDS)
+
+        then:
+        notes.log == ["update:a:1", "update:b:1"]
+    }
+
+    def "should give up after the attempts and keep working after an error"() {
+        given:
+        def reported = new CopyOnWriteArrayList<Throwable>()
+        def previous = Thread.defaultUncaughtExceptionHandler
+        Thread.setDefaultUncaughtExceptionHandler({ t, error -> reported << error } as Thread.UncaughtExceptionHandler)
+        notes.before { n -> if (n.id() == "a") throw new AssertionError((Object) "not fatal") }
+        persistor.behind(WriteBehind.of(16).interval(1).attempts(2))
+
+        when:
+        commit("a", "1")
+        commit("b", "1")
+        persistor.flush().get(5, TimeUnit.SECONDS)
+
+        then:
+        def e = thrown(ExecutionException)
+        e.cause instanceof WriteBehind.GivenUp
+        e.cause.cause instanceof AssertionError
+        (e.cause as WriteBehind.GivenUp).tags*.entity*.id() == ["a"]
+        notes.log == ["update:b:1"]
+        reported.size() == 2
+
+        when: "the next flush has nothing given up"
+        commit("b", "2")
+
+        then:
+        persistor.flush().get(5, TimeUnit.SECONDS) == null
+        notes.log == ["update:b:1", "update:b:2"]
+
+        cleanup:
+        Thread.setDefaultUncaughtExceptionHandler(previous)
+    }
+
+    def "should fail the flushes and refuse the entities of a worker killed by a fatal error"() {
+        given:
+        def previous = Thread.defaultUncaughtExceptionHandler
+        Thread.setDefaultUncaughtExceptionHandler({ t, error -> } as Thread.UncaughtExceptionHandler)
+        notes.before { n -> if (n.id() == "a") throw new OutOfMemoryError("simulated") }
+        persistor.behind(WriteBehind.of(16).interval(1))
+
+        when:
+        commit("a", "1")
+        persistor.flush().get(5, TimeUnit.SECONDS)
+
+        then:
+        def e = thrown(ExecutionException)
+        e.cause.cause instanceof OutOfMemoryError
+
+        when:
+        commit("a", "2")
+
+        then:
+        thrown(IllegalStateException)
+
+        cleanup:
+        Thread.setDefaultUncaughtExceptionHandler(previous)
+    }
+
+    def "should never leave a flush racing with the closing waiting"() {
+        given:
+        def behind = WriteBehind.<Note> of(64).workers(2).interval(1)
+        persistor.behind(behind)
+        def flushes = new CopyOnWriteArrayList<CompletableFuture<Void>>()
+        def flusher = Thread.start {
+            while (!Thread.currentThread().interrupted) flushes << behind.flush()
+        }
+
+        when:
+        sleep(20)
+        behind.close()
+        sleep(20)
+        flusher.interrupt()
+        flusher.join(5000)
+
+        then:
+        !flushes.isEmpty()
+        CompletableFuture.allOf(flushes as CompletableFuture[]).get(5, TimeUnit.SECONDS) == null
+    }
+
+    def "should write every entity accepted before closing"() {
+        given:
+        def behind = WriteBehind.<Note> of(4).interval(1)
+        persistor.behind(behind)
+        def accepted = 0
+        def committer = Thread.start {
+            try {
+                while (true) {
+                    commit("a", "${accepted + 1}")
+                    accepted++
+                }
+            } catch (IllegalStateException ignored) {
+                // closed
+            }
+        }
+
+        when:
+        sleep(50)
+        behind.close()
+        committer.join(5000)
+
+        then:
+        accepted > 0
+        notes.log.size() == accepted
+        behind.flush().get(1, TimeUnit.SECONDS) == null
+    }
+}
@@ -0,0 +1,122 @@
+package com.sinlo.core.domain.persistor.spec
+
+import com.sinlo.core.domain.persistor.Note
+import com.sinlo.core.domain.persistor.Notes
+import com.sinlo.core.domain.persistor.Persistor
+import spock.lang.Specification
+
+class EntityTest extends Specification {
+
+    def "should parse the string form of a key back to an equal key"() {
+        given:
+        def key = new Entity.Key(type, id)
+
+        when:
+        def parsed = Entity.Key.parse(key.toString())
+
+        then:
+        key.toString() == type + "#" + id
+        key.hashCode() == key.toString().hashCode()
+        parsed == key
+        Entity.Key.of(key.toString()) == key
+        parsed.hashCode() == key.hashCode()
+        parsed.toString() == key.toString()
+
+        where:
+        type           | id
+        Note.name      | "a"
+        Note.name      | ""
+        // only the first # separates, as the class name never contains one
+        Note.name      | "a#b#"
+        "Outer\$Inner" | "42"
+    }
+
+    def "should tell the keys apart by both the type and the id"() {
+        expect:
+        new Entity.Key("a", "b") != new Entity.Key("a", "c")
+        new Entity.Key("a", "b") != new Entity.Key("c", "b")
+        // the same concatenation, but a different split
+        new Entity.Key("ab", "c") != new Entity.Key("a", "bc")
+        new Entity.Key("a", "b") != "a#b"
+    }
+
+    def "should refuse a string without the separator"() {
+        when:
+        Entity.Key.parse("no separator")
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def "should key an entity by its class and id, or its hash code"() {
+        given:
+        def note = new Note("a", null, null)
+        def anonymous = new Note(null, null, null)
+
+        expect:
+        note.ident() == new Entity.Key(Note.name, "a")
+        note.key() == Note.name + "#a"
+        Entity.Key.parse(note.key()) == note.ident()
+        anonymous.ident() == new Entity.Key(Note.name, String.valueOf(anonymous.hashCode()))
+    }
+
+    def "should keep a string without the separator as a whole"() {
+        given:
+        def key = Entity.Key.of("no separator")
+
+        expect:
+        key.toString() == "no separator"
+        key.hashCode() == "no separator".hashCode()
+        key == Entity.Key.of("no separator")
+        key != Entity.Key.of("no#separator")
+    }
+
+    def "should key an entity by its overridden key"() {
+        given:
+        def a = new Custom("1", "same")
+        def b = new Custom("2", "same")
+
+        expect:
+        a.ident() == Entity.Key.of("same")
+        a.ident() == b.ident()
+        new Custom("3", "x#y").ident() == new Entity.Key("x", "y")
+
+        when: "the persistor tells them apart by the key as well"
+        def persistor = Persistor.of(Custom)
+        persistor.tag(Tag.Channel.CREATE, a).tag(Tag.Channel.UPDATE, b)
+        def notes = new Notes()
+        persistor.commit({ notes } as Selector)
+
+        then:
+        notes.log == ["create:2:null"]
+    }
+
+    def "should key an entity by its overridden ident"() {
+        given:
+        def entity = new Identified()
+
+        expect:
+        entity.key() == "custom#ident"
+    }
+
+    static class Custom extends Note {
+        final String custom
+
+        Custom(String id, String custom) {
+            super(id, null, null)
+            this.custom = custom
+        }
+
+        @Override
+        String key() {
+            custom
+        }
+    }
+
+    static class Identified extends Note {
+        @Override
+        Entity.Key ident() {
+            new Entity.Key("custom", "ident")
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.sinlo.core.http
+
+import spock.lang.AutoCleanup
+import spock.lang.Shared
+import spock.lang.Specification
+
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.TimeoutException
+import java.util.concurrent.atomic.AtomicInteger
+
+class BatchTest extends Specification {
+
+    @Shared
+    AtomicInteger current = new AtomicInteger()
+
+    @Shared
+    AtomicInteger peak = new AtomicInteger()
+
+    @Shared
+    AtomicInteger hits = new AtomicInteger()
+
+    @Shared
+    @AutoCleanup
+    Stub stub = new Stub().on("/delay", { x ->
+        hits.incrementAndGet()
+        def now = current.incrementAndGet()
+        peak.accumulateAndGet(now, Math.&max)
+        try {
+            sleep(x.requestURI.query as long)
+        } finally {
+            // before answering, or else the next one may arrive before this one leaves
+            current.decrementAndGet()
+        }
+        Stub.answer(x, 200, x.requestURI.query)
+    })
+
+    def setup() {
+        peak.set(0)
+        hits.set(0)
+    }
+
+    def "should keep at most the parallelism in flight and answer in order"() {
+        given:
+        def course = Fetcha.Course.simple()
+        def delays = [120, 20, 80, 10, 60, 30]
+
+        when:
+        def outcomes = Fetcha.batch(delays.collect { course.get(stub.url("/delay?$it")) })
+                .parallelism(2).ordered().get(5, TimeUnit.SECONDS)
+
+        then:
+        outcomes*.index == 0..5
+        outcomes*.get() == delays*.toString()
+        peak.get() == 2
+        hits.get() == 6
+    }
+
+    def "should report a failed fetcha without failing the batch"() {
+        given:
+        def course = Fetcha.Course.simple()
+        def failing = Fetcha.Course.simple().precept(Fetcha.Stage.OPEN, { c, f ->
+            throw new IllegalStateException("refused")
+        })
+        def consumed = []
+
+        when:
+        Fetcha.batch(course.get(stub.url("/delay?1")), failing.get(stub.url("/delay?1")))
+                .completed({ consumed << it }).get(5, TimeUnit.SECONDS)
+
+        then:
+        consumed.size() == 2
+        consumed.find { it.index == 0 }.value() == "1"
+        consumed.find { it.index == 1 }.with { !ok() && error() instanceof IllegalStateException }
+    }
+
+    def "should expire those not done within the deadline and never start the rest"() {
+        given:
+        def course = Fetcha.Course.simple()
+
+        when:
+        def outcomes = Fetcha.batch((1..3).collect { course.get(stub.url("/delay?500")) })
+                .parallelism(1).deadline(100).ordered().get(5, TimeUnit.SECONDS)
+
+        then:
+        outcomes.every { !it.ok() && it.error() instanceof TimeoutException }
+        hits.get() == 1
+    }
+
+    def "should refuse a non positive parallelism"() {
+        when:
+        Fetcha.batch([]).parallelism(0)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+}
@@ -1,12 +1,33 @@
 package com.sinlo.core.http
 
 import com.sinlo.core.http.spec.Next
+import spock.lang.AutoCleanup
+import spock.lang.Shared
 import spock.lang.Specification
 
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
 import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
 
 class FetchaTest extends Specification {
 
+    @Shared
+    AtomicInteger hits = new AtomicInteger()
+
+    @Shared
+    CountDownLatch gate = new CountDownLatch(1)
+
+    @Shared
+    @AutoCleanup
+    Stub stub = new Stub()
+            .on("/slow", { x ->
+                hits.incrementAndGet()
+                gate.await(5, TimeUnit.SECONDS)
+                Stub.answer(x, 200, "slow")
+            })
+            .on("/fast", { x -> Stub.answer(x, 200, "fast") })
+
     def "should fetcha properly fetch"() {
         given:
         def first = new AtomicBoolean(true)
@@ -28,4 +49,40 @@ class FetchaTest extends Specification {
                 .thenApply({ it -> it.text() })
                 .join().isPresent()
     }
+
+    def "should coalesce identical in-flight fetches"() {
+        given:
+        def course = Fetcha.Course.simple().coalesce()
+
+        when:
+        def first = course.get(stub.url("/slow")).fetch()
+        def second = course.get(stub.url("/slow")).fetch()
+        gate.countDown()
+
+        then:
+        first.get(5, TimeUnit.SECONDS) == "slow"
+        second.get(5, TimeUnit.SECONDS) == "slow"
+        hits.get() == 1
+    }
+
+    def "should land the flight when building fails right away"() {
+        given:
+        def failing = new AtomicBoolean(true)
+        def course = Fetcha.Course.simple().coalesce().precept(Fetcha.Stage.OPEN, { c, f ->
+            if (failing.get()) throw new IllegalStateException("refused")
+            return c
+        })
+
+        when:
+        course.get(stub.url("/fast")).fetch()
+
+        then:
+        thrown(IllegalStateException)
+
+        when:
+        failing.set(false)
+
+        then:
+        course.get(stub.url("/fast")).fetch().get(5, TimeUnit.SECONDS) == "fast"
+    }
 }
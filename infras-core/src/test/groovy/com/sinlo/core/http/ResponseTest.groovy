@@ -0,0 +1,88 @@
+package com.sinlo.core.http
+
+import com.sinlo.core.http.spec.Status
+import spock.lang.AutoCleanup
+import spock.lang.Shared
+import spock.lang.Specification
+
+import java.util.zip.GZIPOutputStream
+
+class ResponseTest extends Specification {
+
+    @Shared
+    @AutoCleanup
+    Stub stub = new Stub()
+            .on("/lines", { x ->
+                // chunked, as the length is unknown
+                x.sendResponseHeaders(200, 0)
+                x.responseBody.withWriter("UTF-8") { w ->
+                    (1..10000).each { w.write("line $it\n") }
+                }
+            })
+            .on("/gzip", { x ->
+                def code = (x.requestURI.query ?: "200") as int
+                def accepted = x.requestHeaders.getFirst("Accept-Encoding") ?: ""
+                if (!accepted.contains("gzip")) {
+                    Stub.answer(x, code, "plain " + accepted)
+                    return
+                }
+                def bytes = new ByteArrayOutputStream()
+                new GZIPOutputStream(bytes).withCloseable { it.write("zipped".bytes) }
+                Stub.answer(x, code, bytes.toByteArray(), ["Content-Encoding": "gzip"])
+            })
+            .on("/array", { x ->
+                Stub.answer(x, 200, '[{"a":1},{"a":2},{"a":3}]',
+                        ["Content-Type": "application/json"])
+            })
+
+    def "should stream the lines of a large body"() {
+        when:
+        def response = Fetcha.get(stub.url("/lines")).fetch().join().buffer(64)
+
+        then:
+        response.lines { it.filter { it.startsWith("line ") }.count() }.get() == 10000
+    }
+
+    def "should iterate a root level array element by element"() {
+        given:
+        def values = []
+
+        when:
+        def count = Fetcha.get(stub.url("/array")).fetch().join()
+                .each(Map, { values << it.a }).get()
+
+        then:
+        count == 3
+        values == [1, 2, 3]
+    }
+
+    def "should refuse a non positive buffer"() {
+        when:
+        Fetcha.get(stub.url("/array")).fetch().join().buffer(0)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def "should decode the negotiated gzip body"() {
+        expect:
+        Fetcha.get(stub.url("/gzip")).fetch().join().text().get() == "zipped"
+    }
+
+    def "should decode the body of an unresolvable status"() {
+        when:
+        Fetcha.get(stub.url("/gzip?500")).fetch().join().otherwiseThrow().text()
+
+        then:
+        def e = thrown(Response.UnresolvableStatusException)
+        e.message.contains("zipped")
+    }
+
+    def "should honor the accept encoding given in any case"() {
+        expect:
+        Fetcha.get(stub.url("/gzip")).header("accept-encoding", "identity")
+                .fetch().join().text().get() == "plain identity"
+        Fetcha.Course.identity().uncompressed().get(stub.url("/gzip"))
+                .fetch().join().status() == Status.OK
+    }
+}
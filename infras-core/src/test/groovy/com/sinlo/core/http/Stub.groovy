@@ -0,0 +1,70 @@
+package com.sinlo.core.http
+
+import com.sun.net.httpserver.HttpExchange
+import com.sun.net.httpserver.HttpServer
+
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+
+/**
+ * The in-process http stub server on loopback for the specs, answering by the closures
+ * given to {@link #on(String, Closure)}
+ */
+class Stub implements Closeable {
+
+    static {
+        // or else the head and the body written apart wait for the delayed ack of each other
+        System.setProperty("sun.net.httpserver.nodelay", "true")
+    }
+
+    private final HttpServer server
+    private final ExecutorService executor
+
+    Stub() {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.loopbackAddress, 0), 0)
+        executor = Executors.newCachedThreadPool({ Runnable r ->
+            def t = new Thread(r, "stub")
+            t.daemon = true
+            t
+        })
+        server.executor = executor
+        server.start()
+    }
+
+    /**
+     * Answer the requests of the given path by the given handler
+     */
+    Stub on(String path, Closure handler) {
+        server.createContext(path, { HttpExchange x ->
+            try {
+                handler(x)
+            } finally {
+                x.close()
+            }
+        })
+        this
+    }
+
+    /**
+     * The url of the given path
+     */
+    String url(String path) {
+        "http://${server.address.address.hostAddress}:${server.address.port}$path"
+    }
+
+    @Override
+    void close() {
+        server.stop(0)
+        executor.shutdownNow()
+    }
+
+    static void answer(HttpExchange x, int code, byte[] body, Map<String, String> headers = [:]) {
+        headers.each { k, v -> x.responseHeaders.set(k, v) }
+        x.sendResponseHeaders(code, body.length == 0 ? -1 : body.length)
+        x.responseBody.withCloseable { it.write(body) }
+    }
+
+    static void answer(HttpExchange x, int code, String body, Map<String, String> headers = [:]) {
+        answer(x, code, body.getBytes("UTF-8"), headers)
+    }
+}
@@ -0,0 +1,160 @@
+package com.sinlo.core.http.cache
+
+import com.sinlo.core.http.Fetcha
+import com.sinlo.core.http.Stub
+import spock.lang.AutoCleanup
+import spock.lang.Shared
+import spock.lang.Specification
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicInteger
+
+class CacheTest extends Specification {
+
+    @Shared
+    Map<String, AtomicInteger> hits = new ConcurrentHashMap<>()
+
+    @Shared
+    @AutoCleanup
+    Stub stub = new Stub()
+            .on("/fresh", { x ->
+                hit("/fresh")
+                Stub.answer(x, 200, "fresh", ["Cache-Control": "max-age=60"])
+            })
+            .on("/aged", { x ->
+                hit("/aged")
+                Stub.answer(x, 200, "aged", ["Cache-Control": "max-age=10", "Age": "20"])
+            })
+            .on("/nostore", { x ->
+                hit("/nostore")
+                Stub.answer(x, 200, "nostore", ["Cache-Control": "no-store"])
+            })
+            .on("/etag", { x ->
+                if (x.requestHeaders.getFirst("If-None-Match") == '"v1"') {
+                    hit("/etag 304")
+                    x.responseHeaders.set("ETag", '"v1"')
+                    x.sendResponseHeaders(304, -1)
+                } else {
+                    hit("/etag")
+                    Stub.answer(x, 200, "etag", ["Cache-Control": "no-cache", "ETag": '"v1"'])
+                }
+            })
+            .on("/chunked", { x ->
+                hit("/chunked")
+                x.responseHeaders.set("Cache-Control", "max-age=60")
+                x.sendResponseHeaders(200, 0)
+                x.responseBody.withCloseable { it.write(("x" * LARGE).bytes) }
+            })
+            .on("/sized", { x ->
+                hit("/sized")
+                Stub.answer(x, 200, "x" * LARGE, ["Cache-Control": "max-age=60"])
+            })
+            .on("/vary", { x ->
+                hit("/vary")
+                Stub.answer(x, 200, x.requestHeaders.getFirst("X-Lang") ?: "none",
+                        ["Cache-Control": "max-age=60", "Vary": "X-Lang"])
+            })
+
+    static final int LARGE = 2000
+
+    def hit(String path) {
+        hits.computeIfAbsent(path, { new AtomicInteger() }).incrementAndGet()
+    }
+
+    int hits(String path) {
+        hits.get(path)?.get() ?: 0
+    }
+
+    def setup() {
+        hits.clear()
+    }
+
+    Fetcha.Course<String> course() {
+        Fetcha.Course.simple().cache(Cache.memory(1 << 20))
+    }
+
+    def "should answer a fresh response from the cache"() {
+        given:
+        def course = course()
+
+        expect:
+        course.get(stub.url("/fresh")).fetch().join() == "fresh"
+        course.get(stub.url("/fresh")).fetch().join() == "fresh"
+        hits("/fresh") == 1
+    }
+
+    def "should not answer a response stale by its age or not storable"() {
+        given:
+        def course = course()
+
+        when:
+        2.times {
+            course.get(stub.url("/aged")).fetch().join()
+            course.get(stub.url("/nostore")).fetch().join()
+        }
+
+        then:
+        hits("/aged") == 2
+        hits("/nostore") == 2
+    }
+
+    def "should revalidate a stale response and renew it on 304"() {
+        given:
+        def course = course()
+
+        expect:
+        course.get(stub.url("/etag")).fetch().join() == "etag"
+        course.get(stub.url("/etag")).fetch().join() == "etag"
+        course.get(stub.url("/etag")).fetch().join() == "etag"
+        hits("/etag") == 1
+        hits("/etag 304") == 2
+    }
+
+    def "should select by the headers it varies by"() {
+        given:
+        def course = course()
+
+        expect:
+        course.get(stub.url("/vary")).header("X-Lang", "en").fetch().join() == "en"
+        course.get(stub.url("/vary")).header("X-Lang", "fr").fetch().join() == "fr"
+        course.get(stub.url("/vary")).header("X-Lang", "fr").fetch().join() == "fr"
+        hits("/vary") == 2
+    }
+
+    def "should stream a body too large to be stored through"() {
+        given:
+        def course = Fetcha.Course.simple().cache(Cache.memory(LARGE))
+
+        expect:
+        course.get(stub.url(path)).fetch().join() == "x" * LARGE
+        course.get(stub.url(path)).fetch().join() == "x" * LARGE
+        hits(path) == 2
+
+        where:
+        path << ["/chunked", "/sized"]
+    }
+
+    def "should refuse a stored length beyond what could be read"() {
+        given:
+        def bytes = new ByteArrayOutputStream()
+        new DataOutputStream(bytes).withCloseable {
+            it.writeInt(1)
+            it.writeUTF("key")
+            it.writeUTF("HTTP/1.1 200 OK")
+            it.writeInt(200)
+            it.writeUTF("OK")
+            it.writeInt(0)
+            it.writeInt(0)
+            it.writeLong(0)
+            it.writeLong(0)
+            it.writeInt(Integer.MAX_VALUE)
+        }
+
+        when:
+        Stored.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())),
+                bytes.size())
+
+        then:
+        thrown(IOException)
+    }
+}
@@ -0,0 +1,184 @@
+package com.sinlo.core.http.engine
+
+import com.sinlo.core.http.Fetcha
+import com.sinlo.core.http.Stub
+import com.sinlo.core.http.metric.Probe
+import spock.lang.AutoCleanup
+import spock.lang.Shared
+import spock.lang.Specification
+
+import java.nio.ByteBuffer
+import java.util.concurrent.ForkJoinPool
+
+class NioEngineTest extends Specification {
+
+    @Shared
+    @AutoCleanup
+    Stub stub = new Stub()
+            .on("/length", { x -> Stub.answer(x, 200, "fixed length") })
+            .on("/chunked", { x ->
+                x.sendResponseHeaders(200, 0)
+                x.responseBody.withCloseable { os ->
+                    ["chun", "ked ", "body"].each {
+                        os.write(it.bytes)
+                        os.flush()
+                    }
+                }
+            })
+            .on("/large", { x ->
+                x.sendResponseHeaders(200, LARGE)
+                x.responseBody.withCloseable { os ->
+                    def chunk = new byte[64 * 1024]
+                    Arrays.fill(chunk, (byte) 'x')
+                    for (int i = 0; i < LARGE; i += chunk.length) os.write(chunk)
+                }
+            })
+            .on("/moved", { x ->
+                x.responseHeaders.set("Location", "/length")
+                x.sendResponseHeaders(302, -1)
+            })
+
+    @Shared
+    @AutoCleanup
+    NioEngine engine = new NioEngine(1, ForkJoinPool.commonPool(),
+            new BlockingEngine(ForkJoinPool.commonPool()))
+
+    static final int LARGE = 4 * ResponseParser.Sink.LIMIT
+
+    @Shared
+    Fetcha.Course<String> course = Fetcha.Course.simple().engine(engine)
+
+    static ResponseParser parse(String raw, boolean head = false, int step = 1) {
+        def parser = new ResponseParser(head)
+        def bytes = raw.getBytes("ISO-8859-1")
+        for (int i = 0; i < bytes.length && !parser.done(); i += step) {
+            parser.feed(ByteBuffer.wrap(bytes, i, Math.min(step, bytes.length - i)))
+        }
+        parser
+    }
+
+    static String body(ResponseParser parser) {
+        parser.body == null ? null : parser.body.getText("UTF-8")
+    }
+
+    def "should parse a chunked body fed byte by byte"() {
+        when:
+        def parser = parse("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n"
+                + "4\r\nWiki\r\n6;ext=1\r\npedia \r\n0\r\nTrailer: x\r\n\r\n")
+
+        then:
+        parser.done()
+        parser.code == 200
+        parser.message == "OK"
+        body(parser) == "Wikipedia "
+    }
+
+    def "should stop at the content length"() {
+        when:
+        def parser = parse("HTTP/1.1 201 Created\r\ncontent-length: 5\r\n\r\nhelloEXTRA", false, 7)
+
+        then:
+        parser.done()
+        parser.header("Content-Length") == "5"
+        body(parser) == "hello"
+    }
+
+    def "should read till the end of stream without a length"() {
+        given:
+        def parser = parse("HTTP/1.0 200 OK\r\n\r\nuntil eof")
+
+        expect:
+        !parser.done()
+        parser.eof()
+        body(parser) == "until eof"
+    }
+
+    def "should skip interim responses and bodies that never exist"() {
+        expect:
+        parse("HTTP/1.1 100 Continue\r\n\r\nHTTP/1.1 204 No Content\r\n\r\n").with {
+            done() && code == 204 && body == null
+        }
+        parse("HTTP/1.1 200 OK\r\nContent-Length: 10\r\n\r\n", true).with {
+            done() && code == 200 && body == null
+        }
+    }
+
+    def "should refuse a premature end and malformed heads"() {
+        when:
+        parse("HTTP/1.1 200 OK\r\nContent-Length: 10\r\n\r\nshort").eof()
+
+        then:
+        thrown(IOException)
+
+        when:
+        parse("HTTP/1.1 200 OK\r\nno colon\r\n\r\n")
+
+        then:
+        thrown(IOException)
+    }
+
+    def "should refuse heads and lines beyond the limits"() {
+        when:
+        parse("HTTP/1.1 200 OK\r\nX: ${'a' * ResponseParser.MAX_LINE}\r\n\r\n", false, 1024)
+
+        then:
+        def line = thrown(IOException)
+        line.message.contains("line")
+
+        when:
+        parse("HTTP/1.1 200 OK\r\n" + "X: a\r\n" * (ResponseParser.MAX_HEAD / 6 + 1) + "\r\n",
+                false, 1024)
+
+        then:
+        def head = thrown(IOException)
+        head.message.contains("head")
+    }
+
+    def "should stream a body larger than the sink holds"() {
+        when:
+        def conn = engine.execute(engine.open(new URL(stub.url("/large")), null), null,
+                Probe.NONE).join()
+        def held = conn.inputStream.available()
+        long read = 0
+        conn.inputStream.withCloseable {
+            def buf = new byte[8192]
+            int n
+            while ((n = it.read(buf)) >= 0) read += n
+        }
+
+        then:
+        held <= ResponseParser.Sink.LIMIT + 16 * 1024
+        read == LARGE
+    }
+
+    def "should complete the futures of the shared engine off the common pool"() {
+        given:
+        def engine = NioEngine.shared()
+
+        expect:
+        !(engine.@executor instanceof ForkJoinPool)
+        engine.execute(engine.open(new URL(stub.url("/length")), null), null, Probe.NONE)
+                .join().inputStream.text == "fixed length"
+    }
+
+    def "should fetch through the nio engine"() {
+        expect:
+        course.get(stub.url(path)).fetch().join() == expected
+
+        where:
+        path       || expected
+        "/length"  || "fixed length"
+        "/chunked" || "chunked body"
+        "/moved"   || "fixed length"
+    }
+
+    def "should not follow the redirect when fetching precisely"() {
+        when:
+        def response = Fetcha.Course.identity().engine(engine)
+                .get(stub.url("/moved")).precisely().fetch().join()
+
+        then:
+        response.connection().responseCode == 302
+        response.header("Location") == "/length"
+    }
+}
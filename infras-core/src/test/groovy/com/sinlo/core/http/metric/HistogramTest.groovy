@@ -0,0 +1,92 @@
+package com.sinlo.core.http.metric
+
+import com.sinlo.core.http.Fetcha
+import com.sinlo.core.http.Stub
+import com.sinlo.core.http.spec.Retry
+import com.sinlo.core.http.spec.Status
+import spock.lang.AutoCleanup
+import spock.lang.Shared
+import spock.lang.Specification
+
+import java.util.concurrent.atomic.AtomicInteger
+
+class HistogramTest extends Specification {
+
+    @Shared
+    AtomicInteger hits = new AtomicInteger()
+
+    @Shared
+    @AutoCleanup
+    Stub stub = new Stub().on("/flaky", { x ->
+        Stub.answer(x, (hits.getAndIncrement() & 1) == 0 ? 503 : 200, "ok")
+    })
+
+    def "should answer the percentiles within the relative error"() {
+        given:
+        def histogram = new Histogram()
+        (1..100_000).each { histogram.record(it * 1000L) }
+
+        expect:
+        histogram.count() == 100_000
+        histogram.max() == 100_000_000
+        histogram.mean() == 50_000_500
+        [50, 90, 99, 99.9].every { p ->
+            def exact = p * 1_000_000
+            def got = histogram.percentile(p)
+            got >= exact && got <= exact * (1 + 1 / 8)
+        }
+        histogram.percentile(100) == histogram.max()
+    }
+
+    def "should keep the small values exactly"() {
+        given:
+        def histogram = new Histogram()
+        [-5, 0, 1, 2, 3, 4, 5, 6, 7].each { histogram.record(it) }
+
+        expect:
+        histogram.percentile(0) == 0
+        histogram.percentile(20) == 0
+        histogram.percentile(50) == 3
+        histogram.percentile(100) == 7
+    }
+
+    def "should answer zeros when empty or reset"() {
+        given:
+        def histogram = new Histogram()
+
+        expect:
+        histogram.percentile(99) == 0
+        histogram.mean() == 0
+
+        when:
+        histogram.record(42)
+        histogram.reset()
+
+        then:
+        histogram.count() == 0
+        histogram.max() == 0
+        histogram.percentile(50) == 0
+    }
+
+    def "should metrics count the requests, retries and errors of the hosts"() {
+        given:
+        hits.set(0)
+        def metrics = new Metrics()
+        def course = Fetcha.Course.identity().listen(metrics)
+                .retry(Retry.of(1).backoff(0, 0).on(Status.SERVICE_UNAVAILABLE))
+        def host = new URL(stub.url("/")).authority
+
+        when:
+        course.get(stub.url("/flaky")).fetch().join().text()
+        Fetcha.Course.identity().listen(metrics).get(stub.url("/flaky")).fetch().join().discard()
+
+        then:
+        with(metrics.host(host)) {
+            requests() == 2
+            inflight() == 0
+            retries() == 1
+            errors() == 1
+        }
+        metrics.histogram(Phase.FIRST_BYTE).count() == 3
+    }
+}
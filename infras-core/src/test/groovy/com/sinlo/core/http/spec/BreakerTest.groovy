@@ -0,0 +1,167 @@
+package com.sinlo.core.http.spec
+
+import com.sinlo.core.http.Fetcha
+import com.sinlo.core.http.Stub
+import com.sinlo.core.http.engine.Engine
+import com.sinlo.core.http.metric.Probe
+import spock.lang.AutoCleanup
+import spock.lang.Shared
+import spock.lang.Specification
+
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionException
+import java.util.function.Consumer
+import java.util.concurrent.atomic.AtomicBoolean
+
+class BreakerTest extends Specification {
+
+    @Shared
+    AtomicBoolean down = new AtomicBoolean(true)
+
+    @Shared
+    @AutoCleanup
+    Stub stub = new Stub().on("/", { x -> Stub.answer(x, down.get() ? 503 : 200, "") })
+
+    def "should open after the threshold and close after a successful probe"() {
+        given:
+        def breaker = Breaker.of(2, 50)
+
+        when:
+        breaker.fail("h")
+
+        then:
+        breaker.state("h") == Breaker.State.CLOSED
+        breaker.allows("h")
+
+        when:
+        breaker.fail("h")
+
+        then:
+        breaker.state("h") == Breaker.State.OPEN
+        !breaker.allows("h")
+        breaker.allows("other")
+
+        when:
+        sleep(80)
+
+        then: "a single probe is let through"
+        breaker.allows("h")
+        breaker.state("h") == Breaker.State.HALF_OPEN
+        !breaker.allows("h")
+
+        when:
+        breaker.succeed("h")
+
+        then:
+        breaker.state("h") == Breaker.State.CLOSED
+        breaker.allows("h")
+    }
+
+    def "should open again when the probe fails"() {
+        given:
+        def breaker = Breaker.of(1, 50)
+        breaker.fail("h")
+        sleep(80)
+
+        when:
+        breaker.allows("h")
+        breaker.fail("h")
+
+        then:
+        breaker.state("h") == Breaker.State.OPEN
+        !breaker.allows("h")
+    }
+
+    def "should guard the host of the fetches"() {
+        given:
+        def breaker = Breaker.of(1, 50)
+        def refusing = new AtomicBoolean(false)
+        def course = Fetcha.Course.identity().breaker(breaker)
+                .precept(Fetcha.Stage.ABOUT_TO_CONNECT, { c, f ->
+                    if (refusing.get()) throw new IllegalStateException("refused")
+                    return c
+                })
+        def host = new URL(stub.url("/")).authority
+
+        when: "a 5xx fails the host"
+        course.get(stub.url("/")).fetch().join()
+
+        then:
+        breaker.state(host) == Breaker.State.OPEN
+
+        when:
+        course.get(stub.url("/")).fetch().join()
+
+        then:
+        def e = thrown(CompletionException)
+        e.cause instanceof Breaker.Open
+
+        when: "a request failing before connecting never takes the probe"
+        sleep(80)
+        refusing.set(true)
+        course.get(stub.url("/")).fetch()
+
+        then:
+        thrown(IllegalStateException)
+        breaker.state(host) == Breaker.State.OPEN
+
+        when:
+        refusing.set(false)
+        down.set(false)
+        course.get(stub.url("/")).fetch().join()
+
+        then:
+        breaker.state(host) == Breaker.State.CLOSED
+    }
+
+    def "should open again when the probe is lost"() {
+        given:
+        def breaker = Breaker.of(1, 50)
+        breaker.fail("h")
+        sleep(80)
+
+        expect: "the probe is let through but never settled"
+        breaker.allows("h")
+        breaker.state("h") == Breaker.State.HALF_OPEN
+
+        when:
+        sleep(80)
+
+        then:
+        breaker.state("h") == Breaker.State.OPEN
+
+        when:
+        sleep(80)
+
+        then: "another probe is let through"
+        breaker.allows("h")
+    }
+
+    def "should fail the probe if the engine throws right away"() {
+        given:
+        def breaker = Breaker.of(1, 50)
+        def engine = new Engine() {
+            @Override
+            HttpURLConnection open(URL url, Proxy proxy) {
+                (HttpURLConnection) url.openConnection()
+            }
+
+            @Override
+            CompletableFuture<HttpURLConnection> execute(HttpURLConnection conn,
+                                                         Consumer<OutputStream> bodyWriter, Probe probe) {
+                throw new IllegalStateException("broken")
+            }
+        }
+        def course = Fetcha.Course.identity().breaker(breaker).engine(engine)
+        def host = new URL(stub.url("/")).authority
+        breaker.fail(host)
+        sleep(80)
+
+        when:
+        course.get(stub.url("/")).fetch()
+
+        then:
+        thrown(IllegalStateException)
+        breaker.state(host) == Breaker.State.OPEN
+    }
+}
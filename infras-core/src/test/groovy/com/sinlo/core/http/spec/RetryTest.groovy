@@ -0,0 +1,115 @@
+package com.sinlo.core.http.spec
+
+import com.sinlo.core.http.Fetcha
+import com.sinlo.core.http.Stub
+import spock.lang.AutoCleanup
+import spock.lang.Shared
+import spock.lang.Specification
+
+import java.util.concurrent.CompletionException
+import java.util.concurrent.atomic.AtomicInteger
+
+class RetryTest extends Specification {
+
+    @Shared
+    AtomicInteger hits = new AtomicInteger()
+
+    @Shared
+    @AutoCleanup
+    Stub stub = new Stub().on("/flaky", { x ->
+        // every other request is refused
+        Stub.answer(x, (hits.getAndIncrement() & 1) == 0 ? 503 : 200, "ok")
+    })
+
+    def setup() {
+        hits.set(0)
+    }
+
+    def "should retry only the attempts allowed"() {
+        given:
+        def retry = Retry.of(2)
+
+        expect:
+        retry.allows(1)
+        retry.allows(2)
+        !retry.allows(3)
+        !Retry.of(0).allows(1)
+    }
+
+    def "should retry the statuses and exceptions given"() {
+        given:
+        def retry = Retry.of(1).on(Status.SERVICE_UNAVAILABLE).on(IOException)
+
+        expect:
+        retry.watchesStatuses()
+        retry.retries(503)
+        !retry.retries(500)
+        retry.retries(new SocketTimeoutException())
+        retry.retries(new CompletionException(new ConnectException()))
+        !retry.retries(new IllegalStateException())
+        !Retry.DEFAULT.watchesStatuses()
+    }
+
+    def "should retry the non-idempotent methods only unsafely"() {
+        expect:
+        Retry.of(1).retries(Method.GET)
+        Retry.of(1).retries(Method.PUT)
+        !Retry.of(1).retries(Method.POST)
+        Retry.of(1).unsafely().retries(Method.POST)
+    }
+
+    def "should back off exponentially up to the max"() {
+        given:
+        def retry = Retry.of(10).backoff(100, 1000).multiplier(2).jitterless()
+
+        expect:
+        (1..6).collect { retry.delay(it) } == [100, 200, 400, 800, 1000, 1000]
+        retry.delay(1, "0") == 100
+        retry.delay(1, "3600") == 1000
+        retry.delay(1, "Wed, 21 Oct 2015 07:28:00 GMT") == 100
+        (1..100).every { Retry.of(10).backoff(100, 1000).delay(3) <= 400 }
+    }
+
+    def "should retry a refused status of the idempotent fetch"() {
+        given:
+        def course = Fetcha.Course.identity()
+                .retry(Retry.of(1).backoff(0, 0).on(Status.SERVICE_UNAVAILABLE))
+
+        expect:
+        course.get(stub.url("/flaky")).fetch().join().status() == Status.OK
+        hits.get() == 2
+    }
+
+    def "should not retry a refused status of the non-idempotent fetch unless unsafely"() {
+        given:
+        def retry = Retry.of(1).backoff(0, 0).on(Status.SERVICE_UNAVAILABLE)
+
+        expect:
+        Fetcha.Course.identity().retry(unsafely ? retry.unsafely() : retry)
+                .post(stub.url("/flaky")).fetch().join().status() == status
+        hits.get() == attempts
+
+        where:
+        unsafely || status                     | attempts
+        false    || Status.SERVICE_UNAVAILABLE | 1
+        true     || Status.OK                  | 2
+    }
+
+    def "should configure copies and leave the shared default as it is"() {
+        given:
+        def base = Retry.of(1)
+
+        when:
+        def configured = base.on(Status.SERVICE_UNAVAILABLE).on(IOException).unsafely()
+        Retry.DEFAULT.on(Status.SERVICE_UNAVAILABLE).jitterless()
+
+        then:
+        configured.retries(503)
+        configured.retries(new IOException())
+        configured.retries(Method.POST)
+        !base.retries(503)
+        !base.retries(new IOException())
+        !base.retries(Method.POST)
+        !Retry.DEFAULT.watchesStatuses()
+    }
+}
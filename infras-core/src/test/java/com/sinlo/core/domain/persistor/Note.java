@@ -0,0 +1,50 @@
+package com.sinlo.core.domain.persistor;
+
+import com.sinlo.core.domain.persistor.spec.Entity;
+
+public class Note implements Entity {
+
+    private String id;
+
+    private String title;
+
+    private String body;
+
+    public Note() {
+    }
+
+    public Note(String id, String title, String body) {
+        this.id = id;
+        this.title = title;
+        this.body = body;
+    }
+
+    @Override
+    public String id() {
+        return id;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    public void setBody(String body) {
+        this.body = body;
+    }
+}
@@ -0,0 +1,53 @@
+package com.sinlo.core.domain.persistor;
+
+import com.sinlo.core.domain.persistor.spec.Repo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * The {@link Repo} of {@link Note}s logging every operation as {@code channel:id:title}, and
+ * the names of the dirty properties of a partial update as {@code update:id:[names]}
+ */
+public class Notes implements Repo<Note> {
+
+    public final List<String> log = Collections.synchronizedList(new ArrayList<>());
+
+    private volatile Consumer<Note> before = n -> {
+    };
+
+    /**
+     * Call the given {@code before} prior to every operation, which may throw to fail it
+     */
+    public Notes before(Consumer<Note> before) {
+        this.before = before;
+        return this;
+    }
+
+    @Override
+    public void create(Note note) {
+        before.accept(note);
+        log.add("create:" + note.id() + ":" + note.getTitle());
+    }
+
+    @Override
+    public void update(Note note) {
+        before.accept(note);
+        log.add("update:" + note.id() + ":" + note.getTitle());
+    }
+
+    @Override
+    public void update(Note note, Set<String> dirty) {
+        before.accept(note);
+        log.add("update:" + note.id() + ":" + dirty);
+    }
+
+    @Override
+    public void delete(Note note) {
+        before.accept(note);
+        log.add("delete:" + note.id() + ":" + note.getTitle());
+    }
+}
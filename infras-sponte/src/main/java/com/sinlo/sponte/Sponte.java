@@ -130,6 +130,7 @@ public @interface Sponte {
             SponteFiler.mustVisitable();
             Files.walk(root).map(Path::toFile).forEach(File::delete);
             SponteFiler.ensure(rootspec);
+            SponteFiler.forget();
         }
 
         /**
@@ -169,8 +170,9 @@ public @interface Sponte {
          * Get corresponding {@link Profile profiles} of the given subject
          */
         public static Set<Profile> profiles(Class<? extends Annotation> subject) {
-            return Sponte.Fo.lines(subject,
-                    line -> Profile.of(line, subject, Sponte.Fo.inheritors(subject)));
+            // the inheritors are the same for every profile of the subject
+            final Class<? extends Annotation>[] inheritors = Sponte.Fo.inheritors(subject);
+            return Sponte.Fo.lines(subject, line -> Profile.of(line, subject, inheritors));
         }
 
         /**
@@ -205,6 +207,7 @@ public @interface Sponte {
          */
         public static void delete(String name) throws IOException {
             Files.deleteIfExists(of(name));
+            SponteFiler.forget();
         }
 
         /**
@@ -212,6 +215,7 @@ public @interface Sponte {
          */
         public static void create(String name) throws IOException {
             Files.createFile(of(name));
+            SponteFiler.forget();
         }
 
         /**
@@ -7,14 +7,15 @@ import com.sinlo.sponte.core.SponteExplorer;
 
 import java.lang.annotation.Annotation;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 /**
  * The initializer for sponte, the initialization happens when every first instance of any
- * subclass of this is instantiated unless it is {@link #willing()} for more
+ * subclass of this is instantiated unless it is {@link #willing()} for more. The others
+ * instantiated meanwhile wait for it to be done
  *
  * @author sinlo
  */
@@ -24,11 +25,10 @@ public abstract class SponteInitializer implements Predicate<Profile> {
     public static final int INITIALIZING = 1;
     public static final int DECLINING = -1;
 
-    private static final Pool.Simple<AtomicInteger> states = new Pool.Simple<>();
+    private static final Pool.Simple<Gate> gates = new Pool.Simple<>();
 
-    private AtomicInteger state() {
-        return states.get(this.getClass().getName(),
-                () -> new AtomicInteger(WILLING));
+    private Gate gate() {
+        return gates.get(this.getClass().getName(), Gate::new);
     }
 
     public SponteInitializer() {
@@ -36,47 +36,38 @@ public abstract class SponteInitializer implements Predicate<Profile> {
     }
 
     public void Initialize() {
-        final AtomicInteger state = state();
-        if (state.get() == DECLINING) return;
-        // spin when initializing
-        while (!state.compareAndSet(WILLING, INITIALIZING)) {
-            if (state.get() == DECLINING) {
-                // when the state turns out to decline any more initialization, then
-                // we better just back off
-                return;
-            }
-            try {
-                TimeUnit.MILLISECONDS.sleep(1);
-            } catch (InterruptedException ignored) {
-                return;
-            }
+        final Gate gate = gate();
+        final CountDownLatch done = gate.enter();
+        if (done == null) return;
+
+        final AtomicInteger state = gate.state;
+        try {
+            Class<? extends Annotation>[] subjects = subjects();
+            // INITIALIZING is the only state that can reach here and needs to be altered
+            state.compareAndSet(INITIALIZING, DECLINING);
+
+            List<? extends SponteAware> explored = SponteExplorer
+                    .of(this, payload(), subjects).explore()
+                    .collect(Collectors.toList());
+
+            int fin = state.get();
+
+            // purge the profile pool if declining
+            if (fin == DECLINING) Profile.purge();
+
+            // call finale methods
+            finale(fin);
+            explored.forEach(aware -> aware.finale(fin));
+        } finally {
+            gate.leave(done);
         }
-        Class<? extends Annotation>[] subjects = subjects();
-        // INITIALIZING is the only state that can reach here and needs to be altered
-        state.compareAndSet(INITIALIZING, DECLINING);
-
-        // the real initializing process does not really care about threads
-        List<? extends SponteAware> explored = SponteExplorer
-                .of(this, payload(), subjects).explore().collect(Collectors.toList());
-
-        int fin = state.get();
-
-        // purge the profile pool if declining
-        if (fin == DECLINING) Profile.purge();
-
-        // call finale methods
-        finale(fin);
-        explored.forEach(aware -> aware.finale(fin));
     }
 
     /**
      * Willing for more
      */
-    @SuppressWarnings("StatementWithEmptyBody")
     protected final void willing() {
-        // spin until successfully set
-        final AtomicInteger state = state();
-        while (!state.compareAndSet(state.get(), WILLING)) ;
+        gate().state.set(WILLING);
     }
 
     /**
@@ -107,4 +98,53 @@ public abstract class SponteInitializer implements Predicate<Profile> {
     public Object payload() {
         return null;
     }
+
+    /**
+     * The initialization state of a subclass, with the latch of the one initializing if any
+     */
+    private static class Gate {
+        private final AtomicInteger state = new AtomicInteger(WILLING);
+        private CountDownLatch running;
+        private Thread owner;
+
+        /**
+         * Wait for the one initializing if any, and then try to be the one
+         *
+         * @return the latch to be counted down when done, or null if the initialization is
+         * declined or reentered by the one initializing
+         * @throws IllegalStateException if interrupted while waiting, with the interrupt
+         *                               status of the thread kept
+         */
+        private CountDownLatch enter() {
+            for (; ; ) {
+                CountDownLatch running;
+                synchronized (this) {
+                    if (this.running == null) {
+                        if (!state.compareAndSet(WILLING, INITIALIZING)) return null;
+                        this.owner = Thread.currentThread();
+                        return this.running = new CountDownLatch(1);
+                    }
+                    if (owner == Thread.currentThread()) return null;
+                    running = this.running;
+                }
+                try {
+                    running.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(
+                            "Interrupted while waiting for the initialization", e);
+                }
+            }
+        }
+
+        private void leave(CountDownLatch done) {
+            synchronized (this) {
+                // failed before declining, leave it to the next one
+                state.compareAndSet(INITIALIZING, WILLING);
+                this.running = null;
+                this.owner = null;
+            }
+            done.countDown();
+        }
+    }
 }
@@ -2,6 +2,7 @@ package com.sinlo.sponte.spec;
 
 import com.sinlo.sponte.Sponte;
 import com.sinlo.sponte.util.Pool;
+import com.sinlo.sponte.util.Startup;
 import com.sinlo.sponte.util.Typer;
 
 import java.lang.annotation.Annotation;
@@ -57,8 +58,13 @@ public class Profile {
     public static Profile of(String expr,
                              Class<? extends Annotation> c,
                              Class<? extends Annotation>... inheritors) {
-        return pool.get(expr, () -> populate(null, new Builder(), expr, null))
-                .subject(c, inheritors).build();
+        long start = Startup.start();
+        try {
+            return pool.get(expr, () -> populate(null, new Builder(), expr, null))
+                    .subject(c, inheritors).build();
+        } finally {
+            Startup.stop(Startup.Phase.PROFILE, c == null ? null : c.getName(), start);
+        }
     }
 
     /**
@@ -309,14 +315,23 @@ public class Profile {
         @SuppressWarnings("unchecked")
         @Override
         public T apply(AnnotatedElement e) {
-            for (Class<? extends Annotation> inheritor : inheritors) {
-                Annotation s = e.getAnnotation(inheritor);
-                if (s != null) {
-                    try {
-                        return (T) Ext.create(inheritor, s);
-                    } catch (ClassNotFoundException ignored) {
+            // the looking up of the inheritors is a part of the phase as well
+            long start = Startup.start();
+            Class<? extends Annotation> found = null;
+            try {
+                for (Class<? extends Annotation> inheritor : inheritors) {
+                    Annotation s = e.getAnnotation(inheritor);
+                    if (s != null) {
+                        found = inheritor;
+                        try {
+                            return (T) Ext.create(inheritor, s);
+                        } catch (ClassNotFoundException ignored) {
+                        }
                     }
                 }
+            } finally {
+                Startup.stop(Startup.Phase.SUBJECTIFY, found == null ? null : found.getName(),
+                        start);
             }
             return fallback == null ? null : fallback.apply(e);
         }
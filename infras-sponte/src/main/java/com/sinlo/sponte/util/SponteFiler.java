@@ -10,6 +10,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
@@ -20,6 +21,13 @@ import java.util.function.Supplier;
  */
 public class SponteFiler {
 
+    /**
+     * The lines of the resources read by their names per classloader, which are read once
+     * until being {@link #forget() forgot}
+     */
+    private static final Map<ClassLoader, Map<String, List<String>>> read =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
     private SponteFiler() {
     }
 
@@ -79,6 +87,8 @@ public class SponteFiler {
             }
         } catch (IOException e) {
             throw new RuntimeException(e);
+        } finally {
+            forget();
         }
         return false;
     }
@@ -97,22 +107,48 @@ public class SponteFiler {
     public static <C extends Collection<T>, T> C lines(String fn, Supplier<C> supplier,
                                                        Function<String, T> mapper) {
         final C collection = supplier.get();
+        final ClassLoader loader = Sponte.class.getClassLoader();
+        final List<String> lines = read
+                .computeIfAbsent(loader, l -> new ConcurrentHashMap<>())
+                .computeIfAbsent(fn, n -> read(loader, n));
+        for (String line : lines) {
+            collection.add(mapper.apply(line));
+        }
+        return collection;
+    }
+
+    /**
+     * Read the distinct lines of all the resources of the given filename by the given
+     * classloader
+     */
+    private static List<String> read(ClassLoader loader, String fn) {
+        final long start = Startup.start();
+        final Set<String> lines = new LinkedHashSet<>();
         try {
-            final Enumeration<URL> resources =
-                    Sponte.class.getClassLoader().getResources(fn);
+            final Enumeration<URL> resources = loader == null
+                    ? ClassLoader.getSystemResources(fn) : loader.getResources(fn);
             while (resources.hasMoreElements()) {
                 try (BufferedReader reader = new BufferedReader(new InputStreamReader(
                         resources.nextElement().openStream()))) {
 
-                    reader.lines().map(mapper)
-                            .forEach(collection::add);
+                    reader.lines().forEach(lines::add);
                 } catch (IOException ignored) {
                 }
             }
         } catch (IOException e) {
             e.printStackTrace();
+        } finally {
+            Startup.stop(Startup.Phase.INDEX, fn, start);
         }
-        return collection;
+        return Collections.unmodifiableList(new ArrayList<>(lines));
+    }
+
+    /**
+     * Forget all the lines read, so that the next reading goes to the resources again,
+     * which is necessary once any of them is written
+     */
+    public static void forget() {
+        read.clear();
     }
 
     /**
@@ -123,15 +159,33 @@ public class SponteFiler {
     }
 
     /**
-     * Get the corresponding {@link PrintWriter}
+     * Get the corresponding {@link PrintWriter}, which makes the lines read
+     * {@link #forget() forgot} once it is opened, as it may truncate the file, and every time
+     * after it is flushed or closed, so that no reading in between could keep the lines
+     * before the writing
      */
     public static PrintWriter writer(Path path, boolean append) {
         mustVisitable();
+        final FileOutputStream os;
         try {
-            return new PrintWriter(new FileOutputStream(path.toFile(), append));
+            os = new FileOutputStream(path.toFile(), append);
         } catch (FileNotFoundException e) {
             throw new RuntimeException(e);
         }
+        forget();
+        return new PrintWriter(os) {
+            @Override
+            public void flush() {
+                super.flush();
+                forget();
+            }
+
+            @Override
+            public void close() {
+                super.close();
+                forget();
+            }
+        };
     }
 
     /**
@@ -0,0 +1,248 @@
+package com.sinlo.sponte.util;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The startup profiler, which tallies the count and the time of every {@link Phase} by its
+ * subject, e.g. the annotation or the service, and reports them as json at the end of the
+ * startup. It is off unless the system property {@link #PROPERTY} is set to the path the
+ * report is written to, or {@link #enable() enabled} explicitly. The end of the startup is
+ * marked by {@link #finish()}, which the spring binding calls once the root context is
+ * refreshed, and the application calls itself otherwise
+ * <br/>
+ * The time of a phase is exclusive of the phases nested in it on the same thread, e.g. a
+ * {@link Phase#MAINTAIN} excludes the {@link Phase#SUBJECTIFY} inside, which is tallied on
+ * its own, so that the totals of the phases add up to the time spent in all of them
+ * <pre>{@code
+ * long t = Startup.start();
+ * // the phase
+ * Startup.stop(Startup.Phase.MAINTAIN, type.getName(), t);
+ * }</pre>
+ *
+ * @author sinlo
+ */
+public final class Startup {
+
+    public static final String PROPERTY = "sponte.startup.report";
+
+    /**
+     * The {@link #start()} of a phase when not {@link #enabled()}
+     */
+    public static final long OFF = Long.MIN_VALUE;
+
+    private static final Map<String, Tally> tallies = new ConcurrentHashMap<>();
+
+    private static volatile boolean enabled = System.getProperty(PROPERTY) != null;
+
+    private static final long since = System.nanoTime();
+
+    private static final AtomicBoolean finished = new AtomicBoolean();
+
+    /**
+     * The nanos tallied on the current thread, to be excluded from the phases enclosing them
+     */
+    private static final ThreadLocal<long[]> tallied = ThreadLocal.withInitial(() -> new long[1]);
+
+    private Startup() {
+    }
+
+    /**
+     * Enable the profiling
+     */
+    public static void enable() {
+        enabled = true;
+    }
+
+    public static boolean enabled() {
+        return enabled;
+    }
+
+    /**
+     * @return the start of a phase to be given to {@link #stop(Phase, String, long)}, or
+     * {@link #OFF} if not {@link #enabled()}. It is on the clock of the current thread which
+     * stops while a phase is tallied, so it is only meaningful to that thread
+     */
+    public static long start() {
+        if (!enabled) return OFF;
+        long start = clock();
+        return start == OFF ? start + 1 : start;
+    }
+
+    /**
+     * Tally the phase of the given subject which is started at the given time, exclusive of
+     * the phases tallied meanwhile on the current thread
+     *
+     * @param start the value of {@link #start()}, nothing is tallied if it is {@link #OFF}
+     */
+    public static void stop(Phase phase, String subject, long start) {
+        if (start == OFF) return;
+        long nanos = Math.max(clock() - start, 0);
+        tallied.get()[0] += nanos;
+        tallies.computeIfAbsent(phase.name.concat("\u0000").concat(String.valueOf(subject)),
+                k -> new Tally(phase, String.valueOf(subject))).add(nanos);
+    }
+
+    /**
+     * The nano time minus the nanos tallied on the current thread
+     */
+    private static long clock() {
+        return System.nanoTime() - tallied.get()[0];
+    }
+
+    /**
+     * Write the {@link #report()} to the path of the {@link #PROPERTY} if it is set, only
+     * the first time it is called till {@link #reset()}
+     *
+     * @return the report, or null if not {@link #enabled()} or already finished
+     */
+    public static String finish() {
+        if (!enabled || !finished.compareAndSet(false, true)) return null;
+        String report = report();
+        String path = System.getProperty(PROPERTY);
+        if (path != null && !path.isEmpty()) {
+            try {
+                Files.write(Paths.get(path), report.getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        return report;
+    }
+
+    /**
+     * Clear all the tallies, and be able to {@link #finish()} again
+     */
+    public static void reset() {
+        tallies.clear();
+        finished.set(false);
+    }
+
+    /**
+     * The json report of all the tallies till now, with the totals of every phase and the
+     * tallies of every subject ordered by phase and then by the time spent descending
+     * <pre>{@code
+     * {"elapsed":123,"phases":{"index":{"count":1,"nanos":2,"max":2}},
+     *  "subjects":[{"phase":"index","subject":"...","count":1,"nanos":2,"max":2}]}
+     * }</pre>
+     * in which the times are all in nanoseconds, and the elapsed is of the time since this
+     * class is loaded
+     */
+    public static String report() {
+        List<Tally> all = new ArrayList<>(tallies.values());
+        all.sort(Comparator.<Tally, Phase>comparing(t -> t.phase)
+                .thenComparing(Comparator.comparingLong(Tally::nanos).reversed()));
+
+        StringBuilder builder = new StringBuilder("{\"elapsed\":")
+                .append(System.nanoTime() - since).append(",\"phases\":{");
+        boolean first = true;
+        for (Phase phase : Phase.values()) {
+            long count = 0, nanos = 0, max = 0;
+            for (Tally t : all) {
+                if (t.phase != phase) continue;
+                count += t.count.sum();
+                nanos += t.nanos();
+                max = Math.max(max, t.max.get());
+            }
+            if (count == 0) continue;
+            if (!first) builder.append(',');
+            first = false;
+            builder.append('"').append(phase.name).append("\":{");
+            figures(builder, count, nanos, max);
+            builder.append('}');
+        }
+        builder.append("},\"subjects\":[");
+        for (int i = 0; i < all.size(); i++) {
+            Tally t = all.get(i);
+            if (i != 0) builder.append(',');
+            builder.append("{\"phase\":\"").append(t.phase.name).append("\",\"subject\":");
+            quote(builder, t.subject).append(',');
+            figures(builder, t.count.sum(), t.nanos(), t.max.get());
+            builder.append('}');
+        }
+        return builder.append("]}").toString();
+    }
+
+    private static void figures(StringBuilder builder, long count, long nanos, long max) {
+        builder.append("\"count\":").append(count)
+                .append(",\"nanos\":").append(nanos)
+                .append(",\"max\":").append(max);
+    }
+
+    private static StringBuilder quote(StringBuilder builder, String s) {
+        builder.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') builder.append('\\').append(c);
+            else if (c < 0x20) builder.append(String.format("\\u%04x", (int) c));
+            else builder.append(c);
+        }
+        return builder.append('"');
+    }
+
+    /**
+     * The phases of the startup
+     */
+    public enum Phase {
+        /**
+         * Reading an index under META-INF/spontaneously, by the resource name
+         */
+        INDEX("index"),
+        /**
+         * Resolving a {@link com.sinlo.sponte.spec.Profile}, by the annotation
+         */
+        PROFILE("profile"),
+        /**
+         * Resolving the inherited annotation of an element, by the annotation inherited, or
+         * null if it inherits none
+         */
+        SUBJECTIFY("subjectify"),
+        /**
+         * Maintaining the delegation of an explored service, by the service type
+         */
+        MAINTAIN("maintain"),
+        /**
+         * Wrapping a bean into its delegation when it is joined, by the bean type
+         */
+        JOIN("join");
+
+        public final String name;
+
+        Phase(String name) {
+            this.name = name;
+        }
+    }
+
+    private static class Tally {
+        private final Phase phase;
+        private final String subject;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        private Tally(Phase phase, String subject) {
+            this.phase = phase;
+            this.subject = subject;
+        }
+
+        private void add(long nanos) {
+            this.count.increment();
+            this.nanos.add(nanos);
+            this.max.accumulateAndGet(nanos, Math::max);
+        }
+
+        private long nanos() {
+            return nanos.sum();
+        }
+    }
+}
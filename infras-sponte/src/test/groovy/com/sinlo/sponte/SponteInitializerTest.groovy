@@ -0,0 +1,160 @@
+package com.sinlo.sponte
+
+import spock.lang.Specification
+import spock.lang.Timeout
+
+import java.lang.annotation.Annotation
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Every feature uses its own subclass, as the state of a subclass is global. The state is
+ * kept in static fields, as the constructor initializes before the fields of an instance
+ */
+@Timeout(10)
+class SponteInitializerTest extends Specification {
+
+    static class Slow extends SponteInitializer {
+        static final AtomicInteger calls = new AtomicInteger()
+        static final CountDownLatch entered = new CountDownLatch(1)
+        static final CountDownLatch release = new CountDownLatch(1)
+
+        @Override
+        Class<? extends Annotation>[] subjects() {
+            calls.incrementAndGet()
+            entered.countDown()
+            release.await()
+            new Class[0]
+        }
+    }
+
+    static class Blocking extends SponteInitializer {
+        static final CountDownLatch entered = new CountDownLatch(1)
+        static final CountDownLatch release = new CountDownLatch(1)
+
+        @Override
+        Class<? extends Annotation>[] subjects() {
+            entered.countDown()
+            release.await()
+            new Class[0]
+        }
+    }
+
+    static class Reentrant extends SponteInitializer {
+        static final AtomicInteger calls = new AtomicInteger()
+
+        @Override
+        Class<? extends Annotation>[] subjects() {
+            if (calls.incrementAndGet() == 1) new Reentrant()
+            new Class[0]
+        }
+    }
+
+    static class Willing extends SponteInitializer {
+        static final AtomicInteger calls = new AtomicInteger()
+
+        @Override
+        Class<? extends Annotation>[] subjects() {
+            calls.incrementAndGet()
+            willing()
+            new Class[0]
+        }
+    }
+
+    static class Failing extends SponteInitializer {
+        static final AtomicInteger calls = new AtomicInteger()
+
+        @Override
+        Class<? extends Annotation>[] subjects() {
+            if (calls.incrementAndGet() == 1) throw new IllegalStateException("first")
+            new Class[0]
+        }
+    }
+
+    def "should make the others wait till the one initializing is done"() {
+        given:
+        def first = Thread.start { new Slow() }
+        Slow.entered.await()
+        def returned = new CountDownLatch(1)
+        def second = Thread.start {
+            new Slow()
+            returned.countDown()
+        }
+
+        when:
+        while (second.state != Thread.State.WAITING) Thread.sleep(1)
+
+        then:
+        returned.count == 1
+
+        when:
+        Slow.release.countDown()
+        first.join()
+        second.join()
+
+        then:
+        returned.count == 0
+        // declined after the first one
+        Slow.calls.get() == 1
+    }
+
+    def "should throw and keep the interrupt status when interrupted while waiting"() {
+        given:
+        def first = Thread.start { new Blocking() }
+        Blocking.entered.await()
+        def failure = null
+        def interrupted = false
+        def second = Thread.start {
+            try {
+                new Blocking()
+            } catch (IllegalStateException ex) {
+                failure = ex
+                interrupted = Thread.currentThread().isInterrupted()
+            }
+        }
+
+        when:
+        while (second.state != Thread.State.WAITING) Thread.sleep(1)
+        second.interrupt()
+        second.join()
+        Blocking.release.countDown()
+        first.join()
+
+        then:
+        failure instanceof IllegalStateException
+        failure.cause instanceof InterruptedException
+        interrupted
+    }
+
+    def "should return at once when reentered by the one initializing"() {
+        when:
+        new Reentrant()
+        new Reentrant()
+
+        then:
+        Reentrant.calls.get() == 1
+    }
+
+    def "should initialize again when willing"() {
+        when:
+        3.times { new Willing() }
+
+        then:
+        Willing.calls.get() == 3
+    }
+
+    def "should leave the initialization to the next one when failed"() {
+        when:
+        new Failing()
+
+        then:
+        thrown(IllegalStateException)
+
+        when:
+        new Failing()
+        new Failing()
+
+        then:
+        Failing.calls.get() == 2
+    }
+}
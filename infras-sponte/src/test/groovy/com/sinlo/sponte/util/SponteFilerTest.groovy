@@ -0,0 +1,83 @@
+package com.sinlo.sponte.util
+
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.Paths
+import java.util.function.Function
+
+class SponteFilerTest extends Specification {
+
+    static final String NAME = "META-INF/sponte-filer/lines"
+
+    Path path
+    byte[] original
+
+    def setup() {
+        path = Paths.get(SponteFiler.getResource("/" + NAME).toURI())
+        original = Files.readAllBytes(path)
+        SponteFiler.forget()
+    }
+
+    def cleanup() {
+        Files.write(path, original)
+        SponteFiler.forget()
+    }
+
+    static List<String> lines() {
+        SponteFiler.lines(NAME, { [] }, Function.identity())
+    }
+
+    def "should read the distinct lines once till forgot"() {
+        expect:
+        lines() == ["a", "b"]
+
+        when:
+        Files.write(path, "c\n".bytes)
+
+        then:
+        lines() == ["a", "b"]
+
+        when:
+        SponteFiler.forget()
+
+        then:
+        lines() == ["c"]
+    }
+
+    def "should forget the lines read after the writer flushes or closes"() {
+        given:
+        def writer = SponteFiler.writer(path, true)
+
+        when:
+        lines()
+        writer.println("c")
+        writer.flush()
+
+        then:
+        lines() == ["a", "b", "c"]
+
+        when:
+        lines()
+        writer.println("d")
+        writer.close()
+
+        then:
+        lines() == ["a", "b", "c", "d"]
+    }
+
+    def "should forget the lines read once the writer truncates"() {
+        given:
+        lines()
+
+        when:
+        def writer = SponteFiler.writer(path, false)
+
+        then:
+        lines().isEmpty()
+
+        cleanup:
+        writer?.close()
+    }
+}
@@ -0,0 +1,110 @@
+package com.sinlo.sponte.util
+
+import groovy.json.JsonSlurper
+import spock.lang.Specification
+
+import java.nio.file.Files
+
+import static com.sinlo.sponte.util.Startup.Phase.*
+
+class StartupTest extends Specification {
+
+    def setup() {
+        Startup.enable()
+        Startup.reset()
+    }
+
+    def cleanup() {
+        Startup.reset()
+        System.clearProperty(Startup.PROPERTY)
+    }
+
+    static void tally(Startup.Phase phase, String subject, long nanos) {
+        // back dated, so that the nanos spent are at least the given ones
+        Startup.stop(phase, subject, Startup.start() - nanos)
+    }
+
+    def "should report the totals of the phases and the subjects ordered"() {
+        given:
+        tally(MAINTAIN, "a", 1_000)
+        tally(MAINTAIN, "b", 1_000_000_000)
+        tally(MAINTAIN, "a", 2_000)
+        tally(INDEX, "i", 1_000)
+
+        when:
+        def report = new JsonSlurper().parseText(Startup.report())
+
+        then:
+        report.elapsed > 0
+        report.phases.keySet() as List == ["index", "maintain"]
+        report.phases.maintain.count == 3
+        report.phases.maintain.max >= 1_000_000_000
+        report.phases.maintain.nanos >= 1_000_003_000
+        report.phases.maintain.nanos == report.subjects
+                .findAll { it.phase == "maintain" }.sum { it.nanos }
+        // by phase, and then by the time spent descending
+        report.subjects.collect { [it.phase, it.subject, it.count] } ==
+                [["index", "i", 1], ["maintain", "b", 1], ["maintain", "a", 2]]
+    }
+
+    def "should quote the subjects in the report"() {
+        given:
+        def subject = 'a "quoted"\\ \n subject'
+        tally(JOIN, subject, 1)
+        tally(SUBJECTIFY, null, 1)
+
+        when:
+        def report = new JsonSlurper().parseText(Startup.report())
+
+        then:
+        report.subjects*.subject == ["null", subject]
+    }
+
+    def "should not tally what is not started"() {
+        when:
+        Startup.stop(INDEX, "i", Startup.OFF)
+
+        then:
+        new JsonSlurper().parseText(Startup.report()).subjects.isEmpty()
+    }
+
+    def "should tally a phase exclusive of the ones nested in it"() {
+        given:
+        def start = Startup.start()
+        tally(SUBJECTIFY, "s", 1_000_000_000)
+
+        when:
+        Startup.stop(MAINTAIN, "m", start)
+        def report = new JsonSlurper().parseText(Startup.report())
+
+        then:
+        start != Startup.OFF
+        report.phases.subjectify.nanos >= 1_000_000_000
+        report.phases.maintain.nanos < 1_000_000_000
+    }
+
+    def "should write the report only the first time it finishes"() {
+        given:
+        def path = Files.createTempFile("startup", ".json")
+        System.setProperty(Startup.PROPERTY, path.toString())
+        tally(INDEX, "i", 1)
+
+        when:
+        def report = Startup.finish()
+
+        then:
+        report != null
+        new String(Files.readAllBytes(path), "UTF-8") == report
+
+        when:
+        Files.write(path, new byte[0])
+        tally(INDEX, "j", 1)
+
+        then:
+        Startup.finish() == null
+        Files.size(path) == 0
+
+        cleanup:
+        Files.deleteIfExists(path)
+    }
+}
@@ -2,6 +2,7 @@ package com.sinlo.spring.service.pond;
 
 import com.sinlo.core.service.Ponded;
 import com.sinlo.sponte.SponteInitializer;
+import com.sinlo.sponte.util.Startup;
 import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.config.BeanPostProcessor;
 import org.springframework.context.ApplicationListener;
@@ -28,7 +29,14 @@ public class PondJoiner implements BeanPostProcessor, ImportAware, PriorityOrder
     public Object postProcessBeforeInitialization(Object bean, String beanName) throws BeansException {
         final Class<?> c = bean.getClass();
         return Optional.ofNullable(keepers.get(c.getName()))
-                .map(kpv -> kpv.maintain(c, bean, null))
+                .map(kpv -> {
+                    long start = Startup.start();
+                    try {
+                        return kpv.maintain(c, bean, null);
+                    } finally {
+                        Startup.stop(Startup.Phase.JOIN, c.getName(), start);
+                    }
+                })
                 .orElse(bean);
     }
 
@@ -53,5 +61,7 @@ public class PondJoiner implements BeanPostProcessor, ImportAware, PriorityOrder
     public void onApplicationEvent(ContextRefreshedEvent event) {
         keepers.values().forEach(v -> v.keeper.finale(SponteInitializer.DECLINING));
         keepers.clear();
+        // the end of the startup is the refreshing of the root context, not of its children
+        if (event.getApplicationContext().getParent() == null) Startup.finish();
     }
 }